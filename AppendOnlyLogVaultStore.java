@@ -0,0 +1,433 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// VaultStore that appends every change to a binary log file and serves reads from memory. A write
+// costs one sequential append, plus an fsync when syncOnWrite is set; opening replays the log.
+// Removals and clears are logged too, so the file only grows until compact rewrites it with the
+// live entries. A log created with a master password seals every password with VaultCipher, as
+// the SQLite vault does, and can only be opened with that password again; without one, passwords
+// are logged as given.
+//
+// The file starts with a magic number and version. Each record is its payload length, the CRC32
+// of the payload, and the payload: an operation byte, then for a put the id, creation time and
+// the website, link, username and password as length-prefixed UTF-8 (-1 for null), for a remove
+// the id, for a clear nothing, and for a last id the highest id handed out so far, which compact
+// writes first so that the ids of removed entries are not reused. A sealed log starts with a key
+// record holding the PBKDF2 work factor, salt and key check, and its puts hold the sealed password
+// in place of the UTF-8 one. A record cut short by a crash, or failing its checksum, ends the log;
+// it is cut off on open so that later appends follow the last intact record.
+public class AppendOnlyLogVaultStore extends InMemoryVaultStore {
+    private static final int MAGIC = 0x50574C47; // "PWLG"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+    private static final byte LAST_ID = 4;
+    private static final byte KEY = 5;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final Path file;
+    private final boolean syncOnWrite;
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    // Set for a sealed log, together with what its key record holds
+    private VaultCipher cipher;
+    private int iterations;
+    private byte[] salt;
+    private byte[] keyCheck;
+    // Records of the operation in progress; written out together by logCommit
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_BYTES);
+
+    // Opens or creates a log that keeps passwords as given
+    public AppendOnlyLogVaultStore(Path file, boolean syncOnWrite) throws IOException {
+        this(file, syncOnWrite, null);
+    }
+
+    // Opens or creates a log whose passwords are sealed under masterPassword, which is cleared
+    // afterwards. Throws IllegalArgumentException if the log was sealed under another password.
+    public AppendOnlyLogVaultStore(Path file, boolean syncOnWrite, char[] masterPassword) throws IOException {
+        this.file = file;
+        this.syncOnWrite = syncOnWrite;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            replay(masterPassword);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        } finally {
+            if (masterPassword != null) {
+                Arrays.fill(masterPassword, '\0');
+            }
+        }
+    }
+
+    private void replay(char[] masterPassword) throws IOException {
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            writeFully(channel, header, 0);
+            channel.force(true);
+            channel.position(HEADER_BYTES);
+            if (masterPassword != null) {
+                createKey(masterPassword);
+            }
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException(file + " is not a version " + VERSION + " vault log");
+        }
+
+        long position = HEADER_BYTES;
+        long size = channel.size();
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        ByteBuffer payload = ByteBuffer.allocate(BUFFER_BYTES);
+        while (position + RECORD_HEADER_BYTES <= size) {
+            recordHeader.clear();
+            readFully(recordHeader, position);
+            recordHeader.flip();
+            int length = recordHeader.getInt();
+            int checksum = recordHeader.getInt();
+            if (length <= 0 || position + RECORD_HEADER_BYTES + length > size) {
+                break;
+            }
+            if (payload.capacity() < length) {
+                payload = ByteBuffer.allocate(Integer.highestOneBit(length) * 2);
+            }
+            payload.clear().limit(length);
+            readFully(payload, position + RECORD_HEADER_BYTES);
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            payload.flip();
+            if (position == HEADER_BYTES && payload.get(0) == KEY) {
+                // Outside the try below: a wrong password must fail the open, not cut off the log
+                unlock(payload, masterPassword);
+            } else {
+                if (position == HEADER_BYTES && masterPassword != null) {
+                    throw new IOException(file + " is not sealed and cannot be opened with a master password");
+                }
+                try {
+                    apply(payload);
+                } catch (BufferUnderflowException | IllegalArgumentException e) {
+                    break;
+                }
+            }
+            position += RECORD_HEADER_BYTES + length;
+        }
+        if (position < size) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+        channel.position(position);
+        if (position == HEADER_BYTES && masterPassword != null) {
+            createKey(masterPassword);
+        }
+        rebuildIndex();
+    }
+
+    private void unlock(ByteBuffer payload, char[] masterPassword) throws IOException {
+        if (masterPassword == null) {
+            throw new IOException(file + " is sealed and needs its master password");
+        }
+        payload.get();
+        int storedIterations = payload.getInt();
+        byte[] storedSalt = getBytes(payload);
+        byte[] storedCheck = getBytes(payload);
+        VaultCipher derived = VaultCipher.derive(masterPassword, storedSalt, storedIterations);
+        if (!derived.verifies(storedCheck)) {
+            throw new IllegalArgumentException("Wrong master password for " + file);
+        }
+        cipher = derived;
+        iterations = storedIterations;
+        salt = storedSalt;
+        keyCheck = storedCheck;
+    }
+
+    // Seals the empty log under a key derived from masterPassword with a fresh salt
+    private void createKey(char[] masterPassword) throws IOException {
+        byte[] newSalt = VaultCipher.newSalt();
+        VaultCipher created = VaultCipher.derive(masterPassword, newSalt, VaultCipher.DEFAULT_ITERATIONS);
+        cipher = created;
+        iterations = VaultCipher.DEFAULT_ITERATIONS;
+        salt = newSalt;
+        keyCheck = created.keyCheck();
+        logKey();
+        flushPending();
+        channel.force(true);
+    }
+
+    private void apply(ByteBuffer payload) {
+        byte op = payload.get();
+        switch (op) {
+            case PUT:
+                long id = payload.getLong();
+                long createdAt = payload.getLong();
+                String website = getString(payload);
+                String link = getString(payload);
+                String username = getString(payload);
+                String password = cipher == null ? getString(payload) : open(getBytes(payload));
+                applyPut(new PasswordManager.PasswordEntry(id, website, link, username, password,
+                    password == null ? 0 : password.length(), createdAt), false);
+                break;
+            case REMOVE:
+                applyRemove(payload.getLong());
+                break;
+            case CLEAR:
+                applyClear();
+                break;
+            case LAST_ID:
+                applyLastId(payload.getLong());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown log operation " + op);
+        }
+    }
+
+    @Override
+    void logPut(PasswordManager.PasswordEntry entry) {
+        byte[][] strings = {
+            bytes(entry.getAppName()), bytes(entry.getLink()), bytes(entry.getUsername()), seal(entry.getPassword())
+        };
+        int length = 1 + 8 + 8;
+        for (byte[] value : strings) {
+            length += 4 + (value == null ? 0 : value.length);
+        }
+        ByteBuffer record = beginRecord(length);
+        record.put(PUT).putLong(entry.getId()).putLong(entry.getCreatedAt());
+        for (byte[] value : strings) {
+            putString(record, value);
+        }
+        endRecord(length);
+    }
+
+    @Override
+    void logRemove(long id) {
+        beginRecord(1 + 8).put(REMOVE).putLong(id);
+        endRecord(1 + 8);
+    }
+
+    @Override
+    void logClear() {
+        beginRecord(1).put(CLEAR);
+        endRecord(1);
+    }
+
+    private void logKey() {
+        int length = 1 + 4 + 4 + salt.length + 4 + keyCheck.length;
+        ByteBuffer record = beginRecord(length).put(KEY).putInt(iterations);
+        putString(record, salt);
+        putString(record, keyCheck);
+        endRecord(length);
+    }
+
+    private void logLastId(long id) {
+        beginRecord(1 + 8).put(LAST_ID).putLong(id);
+        endRecord(1 + 8);
+    }
+
+    // Writes the pending records at the end of the log in one call, and syncs them if asked to. If
+    // that fails, the log is cut back to where the operation began: a partial record left in place
+    // would end the log on replay and take every later commit with it, and a whole one would bring
+    // back an operation that was never applied.
+    @Override
+    void logCommit() throws IOException {
+        if (pending.position() == 0) {
+            return;
+        }
+        long end = channel.position();
+        try {
+            flushPending();
+            if (syncOnWrite) {
+                channel.force(false);
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                channel.truncate(end);
+                channel.position(end);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        } finally {
+            // A failed operation is not applied, so its records must not go out with the next one.
+            // A buffer grown by a large appendAll is dropped rather than held for good.
+            pending = pending.capacity() > BUFFER_BYTES ? ByteBuffer.allocate(BUFFER_BYTES) : pending.clear();
+        }
+    }
+
+    // Reserves room for a record with a payload of length bytes and leaves the buffer positioned
+    // at the start of the payload
+    private ByteBuffer beginRecord(int length) {
+        int needed = RECORD_HEADER_BYTES + length;
+        if (pending.remaining() < needed) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + needed));
+            pending.flip();
+            pending = larger.put(pending);
+        }
+        pending.putInt(length).putInt(0);
+        return pending;
+    }
+
+    // Fills in the checksum of the payload just written
+    private void endRecord(int length) {
+        int start = pending.position() - length;
+        crc.reset();
+        crc.update(pending.array(), start, length);
+        pending.putInt(start - 4, (int) crc.getValue());
+    }
+
+    // Rewrites the log with the last id and one put per live entry and swaps it in atomically, so a
+    // crash leaves either the old log or the new one. The new log is opened before the swap and
+    // appended to afterwards, so the store never ends up without an open log.
+    public void compact() throws IOException {
+        lock().writeLock().lock();
+        try {
+            Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            FileChannel previous = channel;
+            FileChannel compacted = null;
+            boolean swapped = false;
+            try {
+                compacted = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                writeFully(compacted, header, 0);
+                channel = compacted;
+                channel.position(HEADER_BYTES);
+                if (cipher != null) {
+                    logKey();
+                }
+                logLastId(lastId());
+                for (PasswordManager.PasswordEntry entry : entries()) {
+                    logPut(entry);
+                    if (pending.position() >= BUFFER_BYTES) {
+                        flushPending();
+                    }
+                }
+                flushPending();
+                compacted.force(true);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                swapped = true;
+            } finally {
+                pending.clear();
+                if (!swapped) {
+                    channel = previous;
+                    if (compacted != null) {
+                        compacted.close();
+                    }
+                    Files.deleteIfExists(temp);
+                }
+            }
+            previous.close();
+        } finally {
+            lock().writeLock().unlock();
+        }
+    }
+
+    private void flushPending() throws IOException {
+        pending.flip();
+        while (pending.hasRemaining()) {
+            channel.write(pending);
+        }
+        pending.clear();
+    }
+
+    // Size of the log on disk, which compact brings back down to the live entries
+    public long logSize() throws IOException {
+        lock().readLock().lock();
+        try {
+            return channel.size();
+        } finally {
+            lock().readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock().writeLock().lock();
+        try {
+            channel.close();
+        } finally {
+            lock().writeLock().unlock();
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of " + file);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] seal(String password) {
+        if (password == null || cipher == null) {
+            return bytes(password);
+        }
+        return cipher.seal(password);
+    }
+
+    private String open(byte[] sealed) {
+        return sealed == null ? null : cipher.open(sealed);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length).put(value);
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("Value runs past the end of its record");
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return value;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("String runs past the end of its record");
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,228 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Runs PasswordManager calls on a background executor and hands back CompletableFutures, so that
+// callers such as the Swing event dispatch thread never wait on SQLite. Opening the vault is
+// itself asynchronous: operations queue behind it and start once the database is ready.
+// Failures complete the future exceptionally with the original SQLException or IOException as
+// the cause.
+public class AsyncPasswordManager {
+    private final CompletableFuture<PasswordManager> manager;
+    private final ExecutorService executor;
+
+    public static AsyncPasswordManager open() {
+        return open(PasswordManager::new);
+    }
+
+    public static AsyncPasswordManager open(String dbUrl) {
+        return open(() -> new PasswordManager(dbUrl));
+    }
+
+    private static AsyncPasswordManager open(Supplier<PasswordManager> opener) {
+        ExecutorService executor = defaultExecutor();
+        return new AsyncPasswordManager(CompletableFuture.supplyAsync(opener, executor), executor);
+    }
+
+    public AsyncPasswordManager(PasswordManager passwordManager) {
+        this(CompletableFuture.completedFuture(passwordManager), defaultExecutor());
+    }
+
+    public AsyncPasswordManager(PasswordManager passwordManager, ExecutorService executor) {
+        this(CompletableFuture.completedFuture(passwordManager), executor);
+    }
+
+    private AsyncPasswordManager(CompletableFuture<PasswordManager> manager, ExecutorService executor) {
+        this.manager = manager;
+        this.executor = executor;
+    }
+
+    // Virtual threads when the runtime has them (Java 21+), otherwise a small pool of daemon
+    // threads. Database concurrency is bounded by the connection pool either way.
+    static ExecutorService defaultExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadFactory factory = runnable -> {
+                Thread thread = new Thread(runnable, "password-manager-async-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), factory);
+        }
+    }
+
+    // Completes once the vault is open, or exceptionally if opening failed
+    public CompletableFuture<PasswordManager> ready() {
+        return manager.thenApply(passwordManager -> passwordManager);
+    }
+
+    public CompletableFuture<String> generatePassword(String websiteName, int upperCase, int lowerCase, int numbers, int symbols) {
+        return submit(passwordManager -> passwordManager.generatePassword(websiteName, upperCase, lowerCase, numbers, symbols));
+    }
+
+    public CompletableFuture<Void> createNewFile(String filename) {
+        return submit(passwordManager -> {
+            passwordManager.createNewFile(filename);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> appendToFile(String filename, String appName, String link, String username, String password) {
+        return submit(passwordManager -> {
+            passwordManager.appendToFile(filename, appName, link, username, password);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Integer> appendAll(Iterable<PasswordManager.PasswordEntry> entries) {
+        return submit(passwordManager -> passwordManager.appendAll(entries));
+    }
+
+    public CompletableFuture<PasswordManager.TransferStats> exportCsv(Path file) {
+        return submit(passwordManager -> passwordManager.exportCsv(file));
+    }
+
+    public CompletableFuture<PasswordManager.TransferStats> importCsv(Path file) {
+        return submit(passwordManager -> passwordManager.importCsv(file));
+    }
+
+    public CompletableFuture<PasswordManager.TransferStats> exportMapped(Path file) {
+        return submit(passwordManager -> passwordManager.exportMapped(file));
+    }
+
+    public CompletableFuture<List<PasswordManager.PasswordEntry>> readFile(String filename) {
+        return submit(passwordManager -> passwordManager.readFile(filename));
+    }
+
+    public CompletableFuture<PasswordManager.Page<PasswordManager.PasswordEntry>> readPage(int pageSize, PasswordManager.PageKey after) {
+        return submit(passwordManager -> passwordManager.readPage(pageSize, after));
+    }
+
+    public CompletableFuture<PasswordManager.Page<PasswordManager.EntryMetadata>> readMetadataPage(int pageSize, PasswordManager.PageKey after) {
+        return submit(passwordManager -> passwordManager.readMetadataPage(pageSize, after));
+    }
+
+    public CompletableFuture<Integer> countEntries() {
+        return submit(PasswordManager::countEntries);
+    }
+
+    public CompletableFuture<List<PasswordManager.EntryMetadata>> readMetadataAt(int offset, int limit) {
+        return submit(passwordManager -> passwordManager.readMetadataAt(offset, limit));
+    }
+
+    public CompletableFuture<String> readSecret(long id) {
+        return submit(passwordManager -> passwordManager.readSecret(id));
+    }
+
+    public CompletableFuture<PasswordManager.PasswordEntry> findPassword(String filename, String searchTerm) {
+        return submit(passwordManager -> passwordManager.findPassword(filename, searchTerm));
+    }
+
+    public CompletableFuture<List<PasswordManager.PasswordEntry>> search(String searchTerm, int limit, int offset) {
+        return submit(passwordManager -> passwordManager.search(searchTerm, limit, offset));
+    }
+
+    public CompletableFuture<List<PasswordManager.EntryMetadata>> searchMetadata(String searchTerm, int limit, int offset) {
+        return submit(passwordManager -> passwordManager.searchMetadata(searchTerm, limit, offset));
+    }
+
+    public CompletableFuture<Void> buildSearchIndex() {
+        return submit(passwordManager -> {
+            passwordManager.buildSearchIndex();
+            return null;
+        });
+    }
+
+    public CompletableFuture<List<PasswordManager.EntryMetadata>> quickSearch(String searchTerm, int limit) {
+        return submit(passwordManager -> passwordManager.quickSearch(searchTerm, limit));
+    }
+
+    public CompletableFuture<Boolean> deleteById(long id) {
+        return submit(passwordManager -> passwordManager.deleteById(id));
+    }
+
+    public CompletableFuture<Integer> deleteByIds(Collection<Long> ids) {
+        return submit(passwordManager -> passwordManager.deleteByIds(ids));
+    }
+
+    public CompletableFuture<List<PasswordManager.EntryMetadata>> previewRemoveByIdentifier(String identifier) {
+        return submit(passwordManager -> passwordManager.previewRemoveByIdentifier(identifier));
+    }
+
+    @Deprecated
+    public CompletableFuture<Void> removePassword(String filename, String passwordToRemove) {
+        return submit(passwordManager -> {
+            passwordManager.removePassword(filename, passwordToRemove);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Boolean> removePasswordByIdentifier(String filename, String identifier) {
+        return submit(passwordManager -> passwordManager.removePasswordByIdentifier(filename, identifier));
+    }
+
+    // Derives the key on a background thread; see PasswordManager.unlock
+    public CompletableFuture<Boolean> unlock(char[] masterPassword) {
+        return submit(passwordManager -> passwordManager.unlock(masterPassword));
+    }
+
+    public CompletableFuture<Boolean> isEncrypted() {
+        return submit(PasswordManager::isEncrypted);
+    }
+
+    public CompletableFuture<Integer> encryptExistingEntries() {
+        return submit(PasswordManager::encryptExistingEntries);
+    }
+
+    // Registers once the vault is open. The listener runs on the background thread that did the write.
+    public void addChangeListener(PasswordManager.ChangeListener listener) {
+        manager.thenAccept(passwordManager -> passwordManager.addChangeListener(listener));
+    }
+
+    public void removeChangeListener(PasswordManager.ChangeListener listener) {
+        manager.thenAccept(passwordManager -> passwordManager.removeChangeListener(listener));
+    }
+
+    // Closes the vault once it has opened and then shuts the executor down. Calls still in flight
+    // at that point fail with a closed-pool SQLException.
+    public CompletableFuture<Void> close() {
+        CompletableFuture<Void> closed = manager.thenAcceptAsync(PasswordManager::closeConnection, executor);
+        closed.whenComplete((ignored, error) -> executor.shutdown());
+        return closed;
+    }
+
+    // Unwraps the CompletionException / ExecutionException layers that futures add around failures
+    public static Throwable rootCause(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private interface VaultCall<T> {
+        T call(PasswordManager passwordManager) throws SQLException, IOException;
+    }
+
+    private <T> CompletableFuture<T> submit(VaultCall<T> call) {
+        return manager.thenApplyAsync(passwordManager -> {
+            try {
+                return call.call(passwordManager);
+            } catch (SQLException | IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+}
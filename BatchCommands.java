@@ -0,0 +1,499 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Non-interactive subcommands of PasswordGeneratorApp, for scripts and pipelines. Nothing prompts:
+// the master password comes from the PASSWORD_MANAGER_MASTER_PASSWORD environment variable, and
+// commands that need no secrets run without it. All output goes through one buffered writer,
+// either as tab-separated plain text or, with --format json, as one JSON object per line; errors
+// go to stderr. The exit code tells scripts what happened.
+final class BatchCommands {
+    static final int EXIT_OK = 0;
+    // search or remove matched nothing
+    static final int EXIT_NO_MATCH = 1;
+    static final int EXIT_USAGE = 2;
+    // The command needs the vault's secrets and no valid master password was given
+    static final int EXIT_LOCKED = 3;
+    static final int EXIT_FAILURE = 4;
+    // remove was given an identifier that matches several entries, without --all
+    static final int EXIT_AMBIGUOUS = 5;
+
+    static final String MASTER_PASSWORD_ENV = "PASSWORD_MANAGER_MASTER_PASSWORD";
+    private static final int OUTPUT_BUFFER_CHARS = 64 * 1024;
+    private static final int PAGE_SIZE = 500;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int DEFAULT_CLASS_COUNT = 4;
+
+    private static final Set<String> FLAGS = new HashSet<>(Arrays.asList(
+        "--parallel", "--show-passwords", "--all", "--mapped", "--password-stdin", "--help"));
+    private static final Set<String> OPTIONS = new HashSet<>(Arrays.asList(
+        "--format", "--upper", "--lower", "--digits", "--symbols", "--link", "--username", "--limit", "--id"));
+
+    private static final String USAGE = String.join("\n",
+        "Usage: PasswordGeneratorApp [command] [options]",
+        "Without a command, starts the interactive menu.",
+        "",
+        "Commands:",
+        "  generate [COUNT] [--upper N] [--lower N] [--digits N] [--symbols N] [--parallel]",
+        "  add WEBSITE [--link URL] [--username NAME] [--password-stdin | --upper N ...]",
+        "  list [--show-passwords]",
+        "  search TERM [--limit N] [--show-passwords]",
+        "  remove IDENTIFIER [--all] | remove --id ID",
+        "  export FILE [--mapped]",
+        "",
+        "Options:",
+        "  --format plain|json   tab-separated text (default) or one JSON object per line",
+        "",
+        "Commands that read or write passwords take the master password from " + MASTER_PASSWORD_ENV + ".",
+        "Exit codes: 0 success, 1 no match, 2 usage error, 3 vault locked, 4 failure, 5 ambiguous match.",
+        "");
+
+    private final PasswordManager passwordManager;
+    private final Writer out;
+    private final Arguments arguments;
+    private final boolean json;
+    // Reused for every output line
+    private final StringBuilder line = new StringBuilder(256);
+
+    private BatchCommands(PasswordManager passwordManager, Writer out, Arguments arguments) {
+        this.passwordManager = passwordManager;
+        this.out = out;
+        this.arguments = arguments;
+        String format = arguments.option("--format", "plain");
+        if (!format.equals("plain") && !format.equals("json")) {
+            throw new UsageException("Unknown format: " + format);
+        }
+        this.json = format.equals("json");
+    }
+
+    // Runs the command in args and returns the process exit code
+    static int run(PasswordManager passwordManager, String[] args) {
+        Writer out = new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), OUTPUT_BUFFER_CHARS);
+        try {
+            Arguments arguments = Arguments.parse(args);
+            if (arguments.flag("--help") || arguments.command().equals("help")) {
+                out.write(USAGE);
+                return EXIT_OK;
+            }
+            return new BatchCommands(passwordManager, out, arguments).execute();
+        } catch (UsageException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.print(USAGE);
+            return EXIT_USAGE;
+        } catch (LockedException e) {
+            System.err.println("Error: " + e.getMessage());
+            return EXIT_LOCKED;
+        } catch (SQLException | IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            return EXIT_FAILURE;
+        } catch (RuntimeException e) {
+            // Anything else is a fault, not a mistake in the command line
+            System.err.println("Error: " + e);
+            return EXIT_FAILURE;
+        } finally {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                System.err.println("Error: " + e.getMessage());
+            }
+        }
+    }
+
+    private int execute() throws SQLException, IOException {
+        switch (arguments.command()) {
+            case "generate":
+                return generate();
+            case "add":
+                return add();
+            case "list":
+                return list();
+            case "search":
+                return search();
+            case "remove":
+                return remove();
+            case "export":
+                return export();
+            default:
+                throw new UsageException("Unknown command: " + arguments.command());
+        }
+    }
+
+    private int generate() throws IOException {
+        int count = arguments.positionalCount() > 0 ? parseCount(arguments.positional(0)) : 1;
+        PasswordManager.PasswordSpec spec = spec();
+        boolean parallel = arguments.flag("--parallel");
+        if (!json) {
+            // Whole blocks of lines go straight to the writer; nothing is formatted per password
+            passwordManager.generatePasswords(count, spec, out, parallel);
+            return EXIT_OK;
+        }
+        try {
+            passwordManager.passwordStream(count, spec, false).forEach(password -> {
+                line.setLength(0);
+                line.append("{\"password\":");
+                appendJson(line, password);
+                line.append('}');
+                writeLine();
+            });
+        } catch (UncheckedWriteException e) {
+            throw e.getCause();
+        }
+        return EXIT_OK;
+    }
+
+    private int add() throws SQLException, IOException {
+        String website = arguments.positional(0);
+        String link = arguments.option("--link", "");
+        String username = arguments.option("--username", "");
+        boolean generated = !arguments.flag("--password-stdin");
+        String password;
+        if (generated) {
+            password = passwordManager.generatePassword(spec());
+        } else {
+            password = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)).readLine();
+            if (password == null || password.isEmpty()) {
+                throw new UsageException("No password on standard input");
+            }
+        }
+        requireUnlocked();
+        PasswordManager.EntryMetadata stored = passwordManager.addEntry(website, link, username, password);
+
+        line.setLength(0);
+        if (json) {
+            line.append("{\"id\":").append(stored.getId()).append(",\"website\":");
+            appendJson(line, stored.getAppName());
+            if (generated) {
+                line.append(",\"password\":");
+                appendJson(line, password);
+            }
+            line.append('}');
+        } else {
+            line.append(stored.getId());
+            if (generated) {
+                line.append('\t').append(password);
+            }
+        }
+        writeLine();
+        return EXIT_OK;
+    }
+
+    // Page by page, so that only one page of the vault is in memory at a time
+    private int list() throws SQLException, IOException {
+        boolean showPasswords = arguments.flag("--show-passwords");
+        if (showPasswords) {
+            requireUnlocked();
+        }
+        PasswordManager.PageKey nextKey = null;
+        do {
+            PasswordManager.Page<? extends PasswordManager.EntryMetadata> page = showPasswords
+                ? passwordManager.readPage(PAGE_SIZE, nextKey)
+                : passwordManager.readMetadataPage(PAGE_SIZE, nextKey);
+            for (PasswordManager.EntryMetadata entry : page.getEntries()) {
+                writeEntry(entry);
+            }
+            nextKey = page.getNextKey();
+        } while (nextKey != null);
+        return EXIT_OK;
+    }
+
+    private int search() throws SQLException, IOException {
+        String term = arguments.positional(0);
+        int limit = parseCount(arguments.option("--limit", String.valueOf(DEFAULT_SEARCH_LIMIT)));
+        if (limit == 0) {
+            return EXIT_OK;
+        }
+        List<? extends PasswordManager.EntryMetadata> results;
+        if (arguments.flag("--show-passwords")) {
+            requireUnlocked();
+            results = passwordManager.search(term, limit, 0);
+        } else {
+            results = passwordManager.searchMetadata(term, limit, 0);
+        }
+        for (PasswordManager.EntryMetadata entry : results) {
+            writeEntry(entry);
+        }
+        return results.isEmpty() ? EXIT_NO_MATCH : EXIT_OK;
+    }
+
+    // Removes by id, or every entry matching an identifier. An identifier that matches several
+    // entries removes nothing unless --all is given; the matches are listed so a script can pick
+    // one by id instead. Prints the entries removed.
+    private int remove() throws SQLException, IOException {
+        String id = arguments.option("--id", null);
+        if (id != null) {
+            long parsed;
+            try {
+                parsed = Long.parseLong(id);
+            } catch (NumberFormatException e) {
+                throw new UsageException("Not an entry id: " + id);
+            }
+            return writeRemoved(passwordManager.deleteEntries(Collections.singletonList(parsed)));
+        }
+        List<PasswordManager.EntryMetadata> matches = passwordManager.previewRemoveByIdentifier(arguments.positional(0));
+        if (matches.isEmpty()) {
+            return EXIT_NO_MATCH;
+        }
+        if (matches.size() > 1 && !arguments.flag("--all")) {
+            for (PasswordManager.EntryMetadata entry : matches) {
+                writeEntry(entry);
+            }
+            System.err.println("Error: " + matches.size() + " entries match; pass --all to remove them all, or remove one with --id");
+            return EXIT_AMBIGUOUS;
+        }
+        List<Long> ids = new ArrayList<>(matches.size());
+        for (PasswordManager.EntryMetadata entry : matches) {
+            ids.add(entry.getId());
+        }
+        return writeRemoved(passwordManager.deleteEntries(ids));
+    }
+
+    private int writeRemoved(List<PasswordManager.EntryMetadata> removed) throws IOException {
+        for (PasswordManager.EntryMetadata entry : removed) {
+            writeEntry(entry);
+        }
+        return removed.isEmpty() ? EXIT_NO_MATCH : EXIT_OK;
+    }
+
+    private int export() throws SQLException, IOException {
+        requireUnlocked();
+        Path file = Paths.get(arguments.positional(0));
+        PasswordManager.TransferStats stats = arguments.flag("--mapped")
+            ? passwordManager.exportMapped(file)
+            : passwordManager.exportCsv(file);
+        line.setLength(0);
+        if (json) {
+            line.append("{\"file\":");
+            appendJson(line, file.toAbsolutePath().toString());
+            line.append(",\"rows\":").append(stats.getRows())
+                .append(",\"elapsedMillis\":").append(stats.getElapsedMillis()).append('}');
+        } else {
+            line.append(stats.getRows()).append('\t').append(file.toAbsolutePath());
+        }
+        writeLine();
+        return EXIT_OK;
+    }
+
+    // Unlocks an encrypted vault with the master password from the environment. A vault without
+    // one stays as it is, since choosing a master password is left to the interactive menu.
+    private void requireUnlocked() throws SQLException {
+        if (!passwordManager.isEncrypted() || passwordManager.isUnlocked()) {
+            return;
+        }
+        String masterPassword = System.getenv(MASTER_PASSWORD_ENV);
+        if (masterPassword == null || masterPassword.isEmpty()) {
+            throw new LockedException("The vault is locked; set " + MASTER_PASSWORD_ENV);
+        }
+        if (!passwordManager.unlock(masterPassword.toCharArray())) {
+            throw new LockedException("Wrong master password in " + MASTER_PASSWORD_ENV);
+        }
+    }
+
+    // Plain: id, website, link, username, length, date/time and, when loaded, the password
+    private void writeEntry(PasswordManager.EntryMetadata entry) throws IOException {
+        String password = entry instanceof PasswordManager.PasswordEntry
+            ? ((PasswordManager.PasswordEntry) entry).getPassword() : null;
+        line.setLength(0);
+        if (json) {
+            line.append("{\"id\":").append(entry.getId()).append(",\"website\":");
+            appendJson(line, entry.getAppName());
+            line.append(",\"link\":");
+            appendJson(line, entry.getLink());
+            line.append(",\"username\":");
+            appendJson(line, entry.getUsername());
+            line.append(",\"length\":").append(entry.getLength())
+                .append(",\"createdAt\":").append(entry.getCreatedAt());
+            if (password != null) {
+                line.append(",\"password\":");
+                appendJson(line, password);
+            }
+            line.append('}');
+        } else {
+            line.append(entry.getId()).append('\t');
+            appendPlain(line, entry.getAppName());
+            line.append('\t');
+            appendPlain(line, entry.getLink());
+            line.append('\t');
+            appendPlain(line, entry.getUsername());
+            line.append('\t').append(entry.getLength()).append('\t').append(entry.getDateTime());
+            if (password != null) {
+                line.append('\t');
+                appendPlain(line, password);
+            }
+        }
+        out.append(line).append('\n');
+    }
+
+    private void writeLine() {
+        try {
+            out.append(line).append('\n');
+        } catch (IOException e) {
+            throw new UncheckedWriteException(e);
+        }
+    }
+
+    private PasswordManager.PasswordSpec spec() {
+        return new PasswordManager.PasswordSpec(
+            parseCount(arguments.option("--upper", String.valueOf(DEFAULT_CLASS_COUNT))),
+            parseCount(arguments.option("--lower", String.valueOf(DEFAULT_CLASS_COUNT))),
+            parseCount(arguments.option("--digits", String.valueOf(DEFAULT_CLASS_COUNT))),
+            parseCount(arguments.option("--symbols", String.valueOf(DEFAULT_CLASS_COUNT))));
+    }
+
+    private static int parseCount(String value) {
+        try {
+            int count = Integer.parseInt(value);
+            if (count >= 0) {
+                return count;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new UsageException("Not a count: " + value);
+    }
+
+    // Tabs and line breaks inside a field would break the columns, so they become spaces
+    private static void appendPlain(StringBuilder sb, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            sb.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+        }
+    }
+
+    static void appendJson(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    // The command line is malformed; reported with the usage text
+    private static final class UsageException extends RuntimeException {
+        UsageException(String message) {
+            super(message);
+        }
+    }
+
+    // The command needs the vault's secrets and they could not be unlocked
+    private static final class LockedException extends RuntimeException {
+        LockedException(String message) {
+            super(message);
+        }
+    }
+
+    // Carries a write failure out of a stream lambda
+    private static final class UncheckedWriteException extends RuntimeException {
+        UncheckedWriteException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    // The command, its positional arguments, and --name value options or bare flags
+    private static final class Arguments {
+        private final String command;
+        private final List<String> positionals = new ArrayList<>();
+        private final Map<String, String> options = new HashMap<>();
+        private final Set<String> flags = new HashSet<>();
+
+        private Arguments(String command) {
+            this.command = command;
+        }
+
+        static Arguments parse(String[] args) {
+            Arguments arguments = new Arguments(args[0]);
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (FLAGS.contains(arg)) {
+                    arguments.flags.add(arg);
+                } else if (OPTIONS.contains(arg)) {
+                    if (i + 1 == args.length) {
+                        throw new UsageException("Missing value for " + arg);
+                    }
+                    arguments.options.put(arg, args[++i]);
+                } else if (arg.startsWith("--")) {
+                    throw new UsageException("Unknown option: " + arg);
+                } else {
+                    arguments.positionals.add(arg);
+                }
+            }
+            return arguments;
+        }
+
+        String command() {
+            return command;
+        }
+
+        int positionalCount() {
+            return positionals.size();
+        }
+
+        String positional(int index) {
+            if (index >= positionals.size()) {
+                throw new UsageException(command + " needs more arguments");
+            }
+            return positionals.get(index);
+        }
+
+        String option(String name, String defaultValue) {
+            return options.getOrDefault(name, defaultValue);
+        }
+
+        // Also true when the flag stands in the place of the command, as in "--help"
+        boolean flag(String name) {
+            return flags.contains(name) || command.equals(name);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Small SQLite connection pool: one writer connection that callers take turns on, and a fixed
+// set of read-only connections that run concurrently thanks to WAL mode. Every wait is bounded
+// and fails with SQLTimeoutException instead of blocking forever.
+class ConnectionPool {
+
+    // A pooled connection together with the prepared statements it has cached. Only the thread
+    // that currently holds the connection may use it.
+    static final class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private final ConnectionPool pool;
+
+        private PooledConnection(ConnectionPool pool, Connection connection) {
+            this.pool = pool;
+            this.connection = connection;
+        }
+
+        Connection connection() {
+            return connection;
+        }
+
+        // Returns the cached statement for sql, preparing it on first use. Callers must not close it.
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement pstmt = statements.get(sql);
+            if (pstmt != null) {
+                pool.statementCacheHits.incrementAndGet();
+                return pstmt;
+            }
+            pool.statementCacheMisses.incrementAndGet();
+            pstmt = connection.prepareStatement(sql);
+            statements.put(sql, pstmt);
+            return pstmt;
+        }
+
+        private void close() {
+            for (PreparedStatement pstmt : statements.values()) {
+                try {
+                    pstmt.close();
+                } catch (SQLException e) {
+                    System.err.println("Error closing prepared statement: " + e.getMessage());
+                }
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing database connection: " + e.getMessage());
+            }
+        }
+    }
+
+    private final PooledConnection writer;
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private final BlockingQueue<PooledConnection> idleReaders;
+    private final List<PooledConnection> readers = new ArrayList<>();
+    private final long timeoutMillis;
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private volatile boolean closed;
+
+    // An in-memory database exists only inside the connection that created it, so such URLs get
+    // no reader connections and every read goes through the writer.
+    ConnectionPool(String url, int readerCount, long timeoutMillis) throws SQLException {
+        this.timeoutMillis = timeoutMillis;
+        int readersToOpen = isInMemory(url) ? 0 : Math.max(0, readerCount);
+        this.idleReaders = new ArrayBlockingQueue<>(Math.max(1, readersToOpen));
+
+        Connection writerConnection = DriverManager.getConnection(url);
+        try (Statement stmt = writerConnection.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout=" + timeoutMillis);
+            if (readersToOpen > 0) {
+                stmt.execute("PRAGMA journal_mode=WAL");
+                stmt.execute("PRAGMA synchronous=NORMAL");
+            }
+        }
+        this.writer = new PooledConnection(this, writerConnection);
+
+        try {
+            for (int i = 0; i < readersToOpen; i++) {
+                Connection readerConnection = DriverManager.getConnection(url);
+                try (Statement stmt = readerConnection.createStatement()) {
+                    stmt.execute("PRAGMA busy_timeout=" + timeoutMillis);
+                    stmt.execute("PRAGMA query_only=ON");
+                }
+                PooledConnection reader = new PooledConnection(this, readerConnection);
+                readers.add(reader);
+                idleReaders.add(reader);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static boolean isInMemory(String url) {
+        return url.contains(":memory:") || url.contains("mode=memory");
+    }
+
+    // Connection for statements that only read. Falls back to the writer when there are no readers.
+    PooledConnection acquireReader() throws SQLException {
+        if (readers.isEmpty()) {
+            return acquireWriter();
+        }
+        checkOpen();
+        PooledConnection reader;
+        try {
+            reader = idleReaders.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a read connection", e);
+        }
+        if (reader == null) {
+            throw new SQLTimeoutException("No read connection available after " + timeoutMillis + " ms");
+        }
+        return reader;
+    }
+
+    void releaseReader(PooledConnection reader) {
+        if (reader == writer) {
+            releaseWriter();
+        } else if (closed) {
+            reader.close();
+        } else {
+            idleReaders.offer(reader);
+        }
+    }
+
+    // The single connection allowed to write. Writers queue in arrival order.
+    PooledConnection acquireWriter() throws SQLException {
+        checkOpen();
+        try {
+            if (!writerLock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Write connection still busy after " + timeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the write connection", e);
+        }
+        if (closed) {
+            writerLock.unlock();
+            throw new SQLException("Connection pool is closed");
+        }
+        return writer;
+    }
+
+    void releaseWriter() {
+        writerLock.unlock();
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+    }
+
+    long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    int getReaderCount() {
+        return readers.size();
+    }
+
+    // Closes idle connections now; readers still checked out are closed when they are released
+    void close() {
+        closed = true;
+        PooledConnection reader;
+        while ((reader = idleReaders.poll()) != null) {
+            reader.close();
+        }
+        boolean locked = false;
+        try {
+            locked = writerLock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            writer.close();
+        } finally {
+            if (locked) {
+                writerLock.unlock();
+            }
+        }
+    }
+}
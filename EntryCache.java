@@ -0,0 +1,135 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Bounded LRU cache of findPassword results keyed by the normalized search term, including terms
+// that found nothing. Writes invalidate only the terms whose answer they can change: an insert
+// drops terms contained in the new row's website or username, a delete drops terms whose cached
+// row went away.
+class EntryCache {
+    // Cached answer for terms that matched no row
+    static final PasswordManager.PasswordEntry NOT_FOUND = new PasswordManager.PasswordEntry(null, null, null, null, 0, 0L);
+    // Rough per-mapping cost of the map node, key and entry objects, excluding string contents
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private final int maxEntries;
+    private final Map<String, PasswordManager.PasswordEntry> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long estimatedBytes;
+    // Bumped by every invalidation, so that a lookup which read the database before a write
+    // committed cannot store its stale answer afterwards
+    private long version;
+
+    EntryCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, PasswordManager.PasswordEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PasswordManager.PasswordEntry> eldest) {
+                if (size() <= EntryCache.this.maxEntries) {
+                    return false;
+                }
+                evictions++;
+                estimatedBytes -= sizeOf(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    // The cached answer, NOT_FOUND for a cached miss, or null when the term is not cached
+    synchronized PasswordManager.PasswordEntry get(String term) {
+        PasswordManager.PasswordEntry entry = entries.get(term);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    // Stores entry (null for no match) unless a write has invalidated anything since readVersion
+    synchronized void put(String term, PasswordManager.PasswordEntry entry, long readVersion) {
+        if (readVersion != version) {
+            return;
+        }
+        PasswordManager.PasswordEntry value = entry == null ? NOT_FOUND : entry;
+        PasswordManager.PasswordEntry previous = entries.put(term, value);
+        if (previous != null) {
+            estimatedBytes -= sizeOf(term, previous);
+        }
+        estimatedBytes += sizeOf(term, value);
+    }
+
+    synchronized void inserted(List<? extends PasswordManager.EntryMetadata> inserted) {
+        version++;
+        List<String> values = new ArrayList<>(inserted.size() * 2);
+        for (PasswordManager.EntryMetadata entry : inserted) {
+            addNormalized(values, entry.getAppName());
+            addNormalized(values, entry.getUsername());
+        }
+        for (Iterator<Map.Entry<String, PasswordManager.PasswordEntry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, PasswordManager.PasswordEntry> cached = it.next();
+            for (String value : values) {
+                if (value.contains(cached.getKey())) {
+                    remove(it, cached);
+                    break;
+                }
+            }
+        }
+    }
+
+    synchronized void deleted(List<? extends PasswordManager.EntryMetadata> deleted) {
+        version++;
+        Set<Long> ids = new HashSet<>();
+        for (PasswordManager.EntryMetadata entry : deleted) {
+            ids.add(entry.getId());
+        }
+        for (Iterator<Map.Entry<String, PasswordManager.PasswordEntry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, PasswordManager.PasswordEntry> cached = it.next();
+            if (cached.getValue() != NOT_FOUND && ids.contains(cached.getValue().getId())) {
+                remove(it, cached);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        version++;
+        entries.clear();
+        estimatedBytes = 0;
+    }
+
+    synchronized PasswordManager.CacheStats stats() {
+        return new PasswordManager.CacheStats(hits, misses, evictions, entries.size(), maxEntries, estimatedBytes);
+    }
+
+    private void remove(Iterator<Map.Entry<String, PasswordManager.PasswordEntry>> it,
+                        Map.Entry<String, PasswordManager.PasswordEntry> cached) {
+        estimatedBytes -= sizeOf(cached.getKey(), cached.getValue());
+        it.remove();
+    }
+
+    private static void addNormalized(List<String> values, String value) {
+        if (value != null) {
+            values.add(value.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private static long sizeOf(String term, PasswordManager.PasswordEntry entry) {
+        return ENTRY_OVERHEAD_BYTES + 2L * (term.length() + length(entry.getAppName()) + length(entry.getLink())
+            + length(entry.getUsername()) + entry.getLength());
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
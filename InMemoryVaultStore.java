@@ -0,0 +1,237 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// VaultStore that keeps entries on the heap only, for tests and throwaway runs. Entries are held
+// in listing order, and lookups go through the same n-gram index as PasswordManager.quickSearch.
+// Reads run alongside each other; writes are serialized.
+public class InMemoryVaultStore implements VaultStore {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, PasswordManager.PasswordEntry> byId = new HashMap<>();
+    private final NavigableSet<PasswordManager.PasswordEntry> listing = new TreeSet<>(PasswordManager.LISTING_ORDER);
+    private final TrigramIndex index = new TrigramIndex();
+    private long lastId;
+
+    @Override
+    public long append(String appName, String link, String username, String password) throws IOException {
+        lock.writeLock().lock();
+        try {
+            PasswordManager.PasswordEntry entry = new PasswordManager.PasswordEntry(
+                lastId + 1, appName, link, username, password, password.length(), System.currentTimeMillis());
+            logPut(entry);
+            logCommit();
+            applyPut(entry, true);
+            return entry.getId();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int appendAll(Iterable<PasswordManager.PasswordEntry> entries) throws IOException {
+        lock.writeLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            long nextId = lastId;
+            List<PasswordManager.PasswordEntry> stored = new ArrayList<>();
+            for (PasswordManager.PasswordEntry entry : entries) {
+                String password = entry.getPassword();
+                PasswordManager.PasswordEntry copy = new PasswordManager.PasswordEntry(
+                    ++nextId, entry.getAppName(), entry.getLink(), entry.getUsername(), password, password.length(),
+                    entry.getCreatedAt() > 0 ? entry.getCreatedAt() : now);
+                logPut(copy);
+                stored.add(copy);
+            }
+            logCommit();
+            boolean inOrder = true;
+            for (PasswordManager.PasswordEntry entry : stored) {
+                inOrder &= listing.isEmpty() || PasswordManager.LISTING_ORDER.compare(entry, listing.first()) < 0;
+                // Indexing older rows one at a time would rebuild the index for each of them
+                applyPut(entry, inOrder);
+            }
+            if (!inOrder) {
+                rebuildIndex();
+            }
+            return stored.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<PasswordManager.PasswordEntry> readAll() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(listing);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public PasswordManager.PasswordEntry find(String searchTerm) {
+        lock.readLock().lock();
+        try {
+            List<Long> ids = index.search(searchTerm, 1);
+            return ids.isEmpty() ? null : byId.get(ids.get(0));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int count() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean removeById(long id) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!byId.containsKey(id)) {
+                return false;
+            }
+            logRemove(id);
+            logCommit();
+            applyRemove(id);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int removeByPassword(String password) throws IOException {
+        lock.writeLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>();
+            for (PasswordManager.PasswordEntry entry : listing) {
+                if (password.equals(entry.getPassword())) {
+                    ids.add(entry.getId());
+                }
+            }
+            return removeAll(ids);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean removeByIdentifier(String identifier) throws IOException {
+        lock.writeLock().lock();
+        try {
+            return removeAll(index.search(identifier, Integer.MAX_VALUE)) > 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() throws IOException {
+        lock.writeLock().lock();
+        try {
+            logClear();
+            logCommit();
+            applyClear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    private int removeAll(List<Long> ids) throws IOException {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        for (long id : ids) {
+            logRemove(id);
+        }
+        logCommit();
+        for (long id : ids) {
+            applyRemove(id);
+        }
+        return ids.size();
+    }
+
+    // Hooks called under the write lock before a change is applied, so that a subclass can make it
+    // durable first; logCommit follows once every record of an operation has been logged
+    void logPut(PasswordManager.PasswordEntry entry) throws IOException {
+    }
+
+    void logRemove(long id) throws IOException {
+    }
+
+    void logClear() throws IOException {
+    }
+
+    void logCommit() throws IOException {
+    }
+
+    // The apply methods change the in-memory state without logging. Callers hold the write lock,
+    // or own the store outright while restoring it. Unindexed puts need a rebuildIndex afterwards.
+    void applyPut(PasswordManager.PasswordEntry entry, boolean indexNow) {
+        PasswordManager.PasswordEntry previous = byId.put(entry.getId(), entry);
+        if (previous != null) {
+            listing.remove(previous);
+        }
+        listing.add(entry);
+        lastId = Math.max(lastId, entry.getId());
+        if (indexNow) {
+            index.put(entry.getId(), entry.getCreatedAt(), entry.getAppName(), entry.getUsername());
+        }
+    }
+
+    // Keeps ids up to id from being handed out again, even after the entries holding them are gone
+    void applyLastId(long id) {
+        lastId = Math.max(lastId, id);
+    }
+
+    void applyRemove(long id) {
+        PasswordManager.PasswordEntry removed = byId.remove(id);
+        if (removed != null) {
+            listing.remove(removed);
+            index.remove(id);
+        }
+    }
+
+    void applyClear() {
+        byId.clear();
+        listing.clear();
+        index.clear();
+    }
+
+    void rebuildIndex() {
+        index.clear();
+        for (PasswordManager.PasswordEntry entry : listing.descendingSet()) {
+            index.put(entry.getId(), entry.getCreatedAt(), entry.getAppName(), entry.getUsername());
+        }
+    }
+
+    // Live entries in listing order, for a subclass holding the write lock or owning the store
+    Iterable<PasswordManager.PasswordEntry> entries() {
+        return listing;
+    }
+
+    // Highest id handed out so far, for a subclass holding the write lock
+    long lastId() {
+        return lastId;
+    }
+
+    ReadWriteLock lock() {
+        return lock;
+    }
+}
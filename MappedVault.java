@@ -0,0 +1,430 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+// Read-only vault snapshot in a compact binary file, for read-mostly deployments that do not need
+// SQLite for every lookup. Opening maps the file and checks its header, without reading any
+// records, so it takes the same time however large the vault is. Lookups binary-search an offset
+// index sorted by website and compare the search key against the mapped bytes in place; only the
+// entries returned are decoded onto the heap.
+//
+// The file is never changed in place. write builds a new one beside it and moves it over the old
+// one atomically, so a crash leaves either the old snapshot or the new one, and readers that have
+// the old file open keep their mapping until they close it. Windows refuses to replace a file that
+// is still mapped, so there a new snapshot can only be written once every reader of the old one
+// has closed it and its mapping has been collected.
+//
+// A snapshot of an encrypted vault keeps every password sealed under the vault key, together with
+// the vault's key check, and its entries open their password only when given the vault's cipher,
+// as PasswordManager.openMapped does. Snapshots of vaults without a master password hold the
+// passwords as given.
+//
+// Layout, big-endian: a header of magic, version, entry count, index offset and key check length
+// (0 when passwords are not sealed), followed by the key check; the records, each its length
+// followed by the id, creation time and password length, then the lower-cased website used as the
+// search key, the website, link, username and password as length-prefixed UTF-8 or sealed bytes
+// (-1 for null); and the index, one int record offset per entry, ordered by key and then newest
+// first.
+public final class MappedVault implements AutoCloseable {
+    private static final int MAGIC = 0x50574D56; // "PWMV"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 20;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    // Offset of the key within a record: length, id, creation time and password length come first
+    private static final int KEY_OFFSET = 4 + 8 + 8 + 4;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int indexOffset;
+    private final boolean sealed;
+    // Opens sealed passwords; supplies null for a snapshot opened without a key, whose entries stay locked
+    private final Supplier<VaultCipher> keys;
+
+    private MappedVault(FileChannel channel, MappedByteBuffer buffer, int count, int indexOffset,
+                        boolean sealed, VaultCipher cipher) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.count = count;
+        this.indexOffset = indexOffset;
+        this.sealed = sealed;
+        this.keys = () -> cipher;
+    }
+
+    // Opens a snapshot; the passwords of a sealed one can then not be read
+    public static MappedVault open(Path file) throws IOException {
+        return open(file, null);
+    }
+
+    // Opens a snapshot whose sealed passwords are opened with cipher. Throws
+    // IllegalArgumentException if the snapshot was sealed under another key.
+    static MappedVault open(Path file, VaultCipher cipher) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not a mapped vault");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException(file + " is not a version " + VERSION + " mapped vault");
+            }
+            int count = buffer.getInt(8);
+            int indexOffset = buffer.getInt(12);
+            int keyCheckBytes = buffer.getInt(16);
+            if (count < 0 || keyCheckBytes < 0 || indexOffset < HEADER_BYTES + keyCheckBytes
+                    || indexOffset + 4L * count != size) {
+                throw new IOException(file + " is truncated or corrupt");
+            }
+            if (keyCheckBytes > 0 && cipher != null) {
+                byte[] keyCheck = new byte[keyCheckBytes];
+                ByteBuffer header = buffer.duplicate();
+                header.position(HEADER_BYTES);
+                header.get(keyCheck);
+                if (!cipher.verifies(keyCheck)) {
+                    throw new IllegalArgumentException(file + " was sealed under another master password");
+                }
+            }
+            return new MappedVault(channel, buffer, count, indexOffset, keyCheckBytes > 0, cipher);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int count() {
+        return count;
+    }
+
+    // The newest entry whose website equals website, ignoring case, or null
+    public PasswordManager.PasswordEntry find(String website) {
+        byte[] key = key(website);
+        int slot = lowerBound(key);
+        return slot < count && compareKey(recordAt(slot), key, false) == 0 ? decode(recordAt(slot)) : null;
+    }
+
+    // Like find, but falls back to the first website starting with prefix, ignoring case
+    public PasswordManager.PasswordEntry findByPrefix(String prefix) {
+        byte[] key = key(prefix);
+        int slot = lowerBound(key);
+        return slot < count && compareKey(recordAt(slot), key, true) == 0 ? decode(recordAt(slot)) : null;
+    }
+
+    // Up to limit entries whose website starts with prefix, ignoring case, in index order
+    public PasswordManager.PasswordEntry[] findAllByPrefix(String prefix, int limit) {
+        byte[] key = key(prefix);
+        int first = lowerBound(key);
+        int end = first;
+        while (end < count && end - first < limit && compareKey(recordAt(end), key, true) == 0) {
+            end++;
+        }
+        PasswordManager.PasswordEntry[] entries = new PasswordManager.PasswordEntry[end - first];
+        for (int i = first; i < end; i++) {
+            entries[i - first] = decode(recordAt(i));
+        }
+        return entries;
+    }
+
+    // Every entry in index order, decoded one at a time as the iterator advances
+    public Iterator<PasswordManager.PasswordEntry> iterator() {
+        return new Iterator<PasswordManager.PasswordEntry>() {
+            private int slot;
+
+            @Override
+            public boolean hasNext() {
+                return slot < count;
+            }
+
+            @Override
+            public PasswordManager.PasswordEntry next() {
+                if (slot >= count) {
+                    throw new NoSuchElementException();
+                }
+                return decode(recordAt(slot++));
+            }
+        };
+    }
+
+    // Closes the file. The mapping itself is released once the vault is garbage collected, so
+    // entries must not be looked up after closing.
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int recordAt(int slot) {
+        return buffer.getInt(indexOffset + 4 * slot);
+    }
+
+    // First slot whose key is not less than key
+    private int lowerBound(byte[] key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareKey(recordAt(mid), key, false) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Compares the key of the record at offset with key as unsigned bytes, without copying it. With
+    // asPrefix, a record key that starts with key compares equal.
+    private int compareKey(int offset, byte[] key, boolean asPrefix) {
+        return compareKey(buffer, offset, key, asPrefix);
+    }
+
+    private static int compareKey(ByteBuffer buffer, int offset, byte[] key, boolean asPrefix) {
+        int length = buffer.getInt(offset + KEY_OFFSET);
+        int start = offset + KEY_OFFSET + 4;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int diff = (buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        if (asPrefix && length >= key.length) {
+            return 0;
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private PasswordManager.PasswordEntry decode(int offset) {
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset + 4);
+        long id = record.getLong();
+        long createdAt = record.getLong();
+        int length = record.getInt();
+        skipString(record);
+        String website = getString(record);
+        String link = getString(record);
+        String username = getString(record);
+        if (sealed) {
+            byte[] password = getBytes(record);
+            if (password != null) {
+                return new PasswordManager.PasswordEntry(id, website, link, username, password, keys, length, createdAt);
+            }
+            return new PasswordManager.PasswordEntry(id, website, link, username, null, length, createdAt);
+        }
+        String password = getString(record);
+        return new PasswordManager.PasswordEntry(id, website, link, username, password, length, createdAt);
+    }
+
+    private static byte[] key(String website) {
+        return website == null ? new byte[0] : website.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Writes entries to file in the mapped format: the records are streamed to a temporary file
+    // beside it while only their keys are kept on the heap to sort the index, and the finished
+    // file is moved over the old one. With a keyCheck, passwords are written sealed under cipher,
+    // reusing the sealed bytes of entries that have them, so a locked vault can be written as long
+    // as all its secrets are sealed. Returns the entries written.
+    static int write(Path file, Iterator<PasswordManager.PasswordEntry> entries, byte[] keyCheck, VaultCipher cipher)
+            throws IOException {
+        Path target = file.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            int count;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+                int keyCheckBytes = keyCheck == null ? 0 : keyCheck.length;
+                int[] offsets = new int[1024];
+                KeyTable keys = new KeyTable();
+                count = 0;
+                long position = HEADER_BYTES + keyCheckBytes;
+                channel.position(HEADER_BYTES);
+                if (keyCheck != null) {
+                    out.put(keyCheck);
+                }
+                while (entries.hasNext()) {
+                    PasswordManager.PasswordEntry entry = entries.next();
+                    byte[] key = key(entry.getAppName());
+                    byte[][] strings = {
+                        key, bytes(entry.getAppName()), bytes(entry.getLink()), bytes(entry.getUsername()),
+                        keyCheck == null ? bytes(entry.getPassword()) : entry.sealedPassword(cipher)
+                    };
+                    int length = KEY_OFFSET;
+                    for (byte[] value : strings) {
+                        length += 4 + (value == null ? 0 : value.length);
+                    }
+                    if (position + length + 4L * (count + 1) > Integer.MAX_VALUE) {
+                        throw new IOException("Vault is too large for a mapped file");
+                    }
+                    if (out.remaining() < length) {
+                        drain(channel, out);
+                        if (out.capacity() < length) {
+                            out = ByteBuffer.allocate(length);
+                        }
+                    }
+                    out.putInt(length - 4).putLong(entry.getId()).putLong(entry.getCreatedAt()).putInt(entry.getLength());
+                    for (byte[] value : strings) {
+                        putString(out, value);
+                    }
+                    if (count == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                    }
+                    offsets[count++] = (int) position;
+                    keys.add(key, entry.getCreatedAt());
+                    position += length;
+                }
+                drain(channel, out);
+
+                for (int slot : keys.sortedSlots()) {
+                    if (!out.hasRemaining()) {
+                        drain(channel, out);
+                    }
+                    out.putInt(offsets[slot]);
+                }
+                drain(channel, out);
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC).putInt(VERSION).putInt(count).putInt((int) position).putInt(keyCheckBytes);
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return count;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // The search keys and creation times of the records written so far, packed into a few arrays
+    // so that a large vault costs a couple of allocations rather than one object per record
+    private static final class KeyTable {
+        private byte[] bytes = new byte[16 * 1024];
+        private int[] starts = new int[1025];
+        private long[] createdAt = new long[1024];
+        private int count;
+        private int end;
+
+        void add(byte[] key, long created) {
+            if (end + key.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, end + key.length));
+            }
+            if (count == createdAt.length) {
+                createdAt = Arrays.copyOf(createdAt, count * 2);
+                starts = Arrays.copyOf(starts, count * 2 + 1);
+            }
+            System.arraycopy(key, 0, bytes, end, key.length);
+            end += key.length;
+            createdAt[count++] = created;
+            starts[count] = end;
+        }
+
+        // Slots in index order: by key as unsigned bytes, then newest first. A bottom-up merge sort
+        // over plain ints, so that nothing is boxed.
+        int[] sortedSlots() {
+            int[] slots = new int[count];
+            for (int i = 0; i < count; i++) {
+                slots[i] = i;
+            }
+            int[] merged = new int[count];
+            for (int width = 1; width < count; width *= 2) {
+                for (int low = 0; low < count; low += 2 * width) {
+                    int middle = Math.min(low + width, count);
+                    int high = Math.min(low + 2 * width, count);
+                    int left = low;
+                    int right = middle;
+                    int next = low;
+                    while (left < middle && right < high) {
+                        merged[next++] = compare(slots[right], slots[left]) < 0 ? slots[right++] : slots[left++];
+                    }
+                    while (left < middle) {
+                        merged[next++] = slots[left++];
+                    }
+                    while (right < high) {
+                        merged[next++] = slots[right++];
+                    }
+                }
+                int[] swap = slots;
+                slots = merged;
+                merged = swap;
+            }
+            return slots;
+        }
+
+        private int compare(int a, int b) {
+            int startA = starts[a];
+            int startB = starts[b];
+            int lengthA = starts[a + 1] - startA;
+            int lengthB = starts[b + 1] - startB;
+            int common = Math.min(lengthA, lengthB);
+            for (int i = 0; i < common; i++) {
+                int diff = (bytes[startA + i] & 0xFF) - (bytes[startB + i] & 0xFF);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            if (lengthA != lengthB) {
+                return Integer.compare(lengthA, lengthB);
+            }
+            return Long.compare(createdAt[b], createdAt[a]);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer bytes) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length).put(value);
+        }
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length > 0) {
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return value;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
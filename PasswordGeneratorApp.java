@@ -1,13 +1,41 @@
+import java.io.Console;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
 
 public class PasswordGeneratorApp {
     private static final PasswordManager passwordManager = new PasswordManager();
     private static final Scanner scanner = new Scanner(System.in);
+    // Rows fetched per query when listing the vault
+    private static final int PAGE_SIZE = 500;
+    // Search results shown before asking whether to show more
+    private static final int SEARCH_PAGE_SIZE = 10;
+    // Listings mask passwords; search results show them, since that is how a password is retrieved
+    private static final TableRenderer listingRenderer = TableRenderer.toStandardOutput(false);
+    private static final TableRenderer searchRenderer = TableRenderer.toStandardOutput(true);
+    private static final int MAX_UNLOCK_ATTEMPTS = 3;
 
     public static void main(String[] args) {
+        if (args.length > 0) {
+            int exitCode = BatchCommands.run(passwordManager, args);
+            passwordManager.closeConnection();
+            System.exit(exitCode);
+        }
+        // Saves and removals print just the rows they touched instead of the whole vault
+        passwordManager.addChangeListener(PasswordGeneratorApp::displayChange);
+        try {
+            if (!unlockVault()) {
+                System.out.println("Could not unlock the vault.");
+                return;
+            }
+        } catch (SQLException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
         while (true) {
             clearScreen();
             displayDateTime();
@@ -30,12 +58,18 @@ public class PasswordGeneratorApp {
                         removePassword();
                         break;
                     case "5":
+                        exportPasswords();
+                        break;
+                    case "6":
+                        importPasswords();
+                        break;
+                    case "7":
                         System.out.println("Thank you for using Password Generator!");
                         return;
                     default:
                         System.out.println("Invalid option. Please try again.");
                 }
-            } catch (SQLException e) {
+            } catch (SQLException | IOException e) {
                 System.out.println("Error: " + e.getMessage());
             }
             
@@ -56,52 +90,153 @@ public class PasswordGeneratorApp {
         
         passwordManager.appendToFile(null, passwordDetails[0], "", "", password);
         System.out.println("\nPassword for " + passwordDetails[0] + " is: " + password);
-        displayPasswords();
     }
 
-    private static void viewPasswords() throws SQLException {
+    // Asks for the master password, choosing one if the vault has none yet, then seals any entries
+    // saved before the vault had one
+    private static boolean unlockVault() throws SQLException {
+        String prompt = passwordManager.isEncrypted() ? "Master password: " : "Choose a master password for the vault: ";
+        for (int attempt = 0; attempt < MAX_UNLOCK_ATTEMPTS; attempt++) {
+            char[] masterPassword = readMasterPassword(prompt);
+            if (masterPassword.length == 0) {
+                System.out.println("The master password must not be empty.");
+                continue;
+            }
+            if (passwordManager.unlock(masterPassword)) {
+                int sealed = passwordManager.encryptExistingEntries();
+                if (sealed > 0) {
+                    System.out.println("Encrypted " + sealed + " existing password entries.");
+                }
+                return true;
+            }
+            System.out.println("Wrong master password.");
+        }
+        return false;
+    }
+
+    // Without echo when there is a console to read from
+    private static char[] readMasterPassword(String prompt) {
+        Console console = System.console();
+        if (console != null) {
+            char[] masterPassword = console.readPassword(prompt);
+            return masterPassword == null ? new char[0] : masterPassword;
+        }
+        System.out.print(prompt);
+        return scanner.nextLine().toCharArray();
+    }
+
+    private static void viewPasswords() throws SQLException, IOException {
         displayPasswords();
     }
 
-    private static void retrievePassword() throws SQLException {
+    private static void retrievePassword() throws SQLException, IOException {
         System.out.print("Enter app name to find password: ");
         String appName = scanner.nextLine();
         
-        PasswordManager.PasswordEntry entry = passwordManager.findPassword(null, appName);
-        if (entry != null) {
-            System.out.println("\nPassword for " + entry.getAppName() + " is: " + entry.getPassword());
-        } else {
-            System.out.println("\nApp / website not found in the database.");
+        // Best matches first; one extra row tells whether another page follows
+        int offset = 0;
+        while (true) {
+            List<PasswordManager.PasswordEntry> results = passwordManager.search(appName, SEARCH_PAGE_SIZE + 1, offset);
+            if (results.isEmpty() && offset == 0) {
+                System.out.println("\nApp / website not found in the database.");
+                return;
+            }
+            searchRenderer.render("Matches " + (offset + 1) + "-" + (offset + Math.min(results.size(), SEARCH_PAGE_SIZE)) + ":",
+                results.subList(0, Math.min(results.size(), SEARCH_PAGE_SIZE)));
+            if (results.size() <= SEARCH_PAGE_SIZE) {
+                return;
+            }
+            System.out.print("Show more matches? (y/n): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                return;
+            }
+            offset += SEARCH_PAGE_SIZE;
         }
     }
 
+    // Shows what matches before anything is deleted, then removes only the chosen entries by id
     private static void removePassword() throws SQLException {
-        System.out.print("Enter the password to remove: ");
-        String passwordToRemove = scanner.nextLine();
+        System.out.print("Enter website name or username to remove: ");
+        String identifier = scanner.nextLine();
         
-        passwordManager.removePassword(null, passwordToRemove);
-        System.out.println("\nUPDATED LIST");
-        displayPasswords();
+        List<PasswordManager.EntryMetadata> matches = passwordManager.previewRemoveByIdentifier(identifier);
+        if (matches.isEmpty()) {
+            System.out.println("\nNo matching entry found.");
+            return;
+        }
+        System.out.println("\nMatching entries:");
+        for (int i = 0; i < matches.size(); i++) {
+            PasswordManager.EntryMetadata entry = matches.get(i);
+            System.out.printf("%4d. %-20s %-15s %-20s%n", i + 1, entry.getAppName(), entry.getUsername(), entry.getDateTime());
+        }
+        System.out.print("Numbers to remove (e.g. 1,3), 'all', or Enter to cancel: ");
+        String choice = scanner.nextLine().trim();
+        if (choice.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = new ArrayList<>();
+        if (choice.equalsIgnoreCase("all")) {
+            for (PasswordManager.EntryMetadata entry : matches) {
+                ids.add(entry.getId());
+            }
+        } else {
+            for (String number : choice.split(",")) {
+                int index;
+                try {
+                    index = Integer.parseInt(number.trim()) - 1;
+                } catch (NumberFormatException e) {
+                    index = -1;
+                }
+                if (index < 0 || index >= matches.size()) {
+                    System.out.println("Invalid entry number: " + number.trim());
+                    return;
+                }
+                ids.add(matches.get(index).getId());
+            }
+        }
+        passwordManager.deleteByIds(ids);
     }
 
-    private static void displayPasswords() throws SQLException {
-        List<PasswordManager.PasswordEntry> entries = passwordManager.readFile(null);
-        System.out.println("\nStored Passwords:");
-        System.out.println("----------------------------------------");
-        System.out.printf("%-20s %-30s %-15s %-20s %-10s %-20s%n", 
-            "Website", "Link", "Username", "Password", "Length", "Date/Time");
-        System.out.println("----------------------------------------");
-        
-        for (PasswordManager.PasswordEntry entry : entries) {
-            System.out.printf("%-20s %-30s %-15s %-20s %-10d %-20s%n",
-                entry.getAppName(),
-                entry.getLink(),
-                entry.getUsername(),
-                entry.getPassword(),
-                entry.getLength(),
-                entry.getDateTime());
+    private static void exportPasswords() throws SQLException, IOException {
+        System.out.print("Export to file: ");
+        Path file = Paths.get(scanner.nextLine().trim());
+        System.out.println("Note: the file will contain every password in plaintext.");
+        PasswordManager.TransferStats stats = passwordManager.exportCsv(file);
+        System.out.println("\nExported " + stats + " to " + file.toAbsolutePath());
+    }
+
+    private static void importPasswords() throws SQLException, IOException {
+        System.out.print("Import from file: ");
+        Path file = Paths.get(scanner.nextLine().trim());
+        PasswordManager.TransferStats stats = passwordManager.importCsv(file);
+        System.out.println("\nImported " + stats);
+    }
+
+    private static void displayPasswords() throws SQLException, IOException {
+        // Streamed page by page so that only one page of the vault is in memory at a time. The
+        // listing leaves the passwords in the database; Retrieve Password shows them for chosen entries.
+        listingRenderer.renderPages("Stored Passwords:", after -> passwordManager.readMetadataPage(PAGE_SIZE, after));
+    }
+
+    private static void displayChange(PasswordManager.ChangeEvent event) {
+        String title;
+        switch (event.getType()) {
+            case INSERTED:
+                title = "Added:";
+                break;
+            case DELETED:
+                title = "Removed:";
+                break;
+            default:
+                System.out.println("\nThe vault changed; choose View All Passwords to see it.");
+                return;
+        }
+        try {
+            listingRenderer.render(title, event.getEntries());
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
         }
-        System.out.println("----------------------------------------");
     }
 
     private static void clearScreen() {
@@ -127,7 +262,9 @@ public class PasswordGeneratorApp {
         System.out.println("    2. View All Passwords");
         System.out.println("    3. Search Password");
         System.out.println("    4. Remove Password");
-        System.out.println("    5. Exit");
+        System.out.println("    5. Export Passwords to CSV");
+        System.out.println("    6. Import Passwords from CSV");
+        System.out.println("    7. Exit");
         System.out.print("Enter your choice: ");
     }
 
@@ -6,17 +6,20 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.awt.datatransfer.*;
 import javax.swing.border.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.plaf.basic.BasicScrollBarUI;
 import javax.swing.plaf.basic.BasicSplitPaneUI;
 import javax.swing.plaf.basic.BasicSplitPaneDivider;
-import java.util.regex.*;
 import java.io.File;
-
-// Update imports to include SQL
-import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public class PasswordGeneratorGUI extends JFrame {
-    private final PasswordManager passwordManager;
+    // Every database call runs off the event dispatch thread; results come back via invokeLater
+    private final AsyncPasswordManager passwordManager;
     private JTextArea displayArea;
     private JTextField websiteNameField;
     private JTextField websiteLinkField;
@@ -35,6 +38,22 @@ public class PasswordGeneratorGUI extends JFrame {
     private static final String PASSWORD_FILE = "passwords.txt";
     private CardLayout cardLayout;
     private JPanel contentPanel;
+    private JTable passwordTable;
+    private VaultTableModel passwordTableModel;
+    // Rows fetched per query as the table scrolls, and how many such pages stay cached
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_CACHED_PAGES = 20;
+    // Live search waits for typing to pause this long, then shows up to this many matches
+    private static final int SEARCH_DEBOUNCE_MILLIS = 150;
+    private static final int LIVE_SEARCH_RESULTS = 200;
+    private Timer searchDebounce;
+    // Only the answer to the latest search, live or from the button, is shown; earlier ones that
+    // finish late are dropped
+    private int searchSequence;
+    private JProgressBar activityIndicator;
+    private JLabel activityLabel;
+    // Background operations still running; the busy indicator shows while this is above zero
+    private int pendingOperations;
     
     // Define colors for modern theme
     private final Color PRIMARY_COLOR = new Color(123, 78, 203);        // Lighter Deep Purple
@@ -54,26 +73,64 @@ public class PasswordGeneratorGUI extends JFrame {
           // Sidebar background
 
     public PasswordGeneratorGUI() {
-        passwordManager = new PasswordManager();
+        // Opens the database in the background; the window shows up right away
+        passwordManager = AsyncPasswordManager.open();
         initializeGUI();
         setLookAndFeel();
-        try {
-            displayPasswords();  // Changed from displayFileContents
-        } catch (SQLException ex) {
-            showError("Error loading passwords: " + ex.getMessage());
+        displayPasswords();  // Changed from displayFileContents
+        unlockVault();
+        // Built once in the background; the vault keeps it current on every write after that
+        runInBackground(passwordManager.buildSearchIndex(), ignored -> { }, "Error indexing passwords: ");
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                passwordManager.close();
+            }
+        });
+    }
+
+    // Asks for the master password once the vault is open, then seals any entries saved before the
+    // vault had one. Cancelling the dialog closes the application.
+    private void unlockVault() {
+        runInBackground(passwordManager.isEncrypted(), encrypted -> promptMasterPassword(encrypted, null), "Error opening vault: ");
+    }
+
+    private void promptMasterPassword(boolean encrypted, String problem) {
+        JPasswordField field = new JPasswordField(20);
+        String prompt = encrypted ? "Enter the master password:" : "Choose a master password for the vault:";
+        Object[] message = problem == null ? new Object[] {prompt, field} : new Object[] {problem, prompt, field};
+        if (JOptionPane.showConfirmDialog(this, message, "Unlock Vault",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            dispatchEvent(new WindowEvent(this, WindowEvent.WINDOW_CLOSING));
+            return;
         }
+        char[] masterPassword = field.getPassword();
+        if (masterPassword.length == 0) {
+            promptMasterPassword(encrypted, "The master password must not be empty.");
+            return;
+        }
+
+        runInBackground(passwordManager.unlock(masterPassword), unlocked -> {
+            if (!unlocked) {
+                promptMasterPassword(true, "Wrong master password.");
+                return;
+            }
+            showTemporaryStatus("Vault unlocked!", SUCCESS_COLOR);
+            runInBackground(passwordManager.encryptExistingEntries(), sealed -> {
+                if (sealed > 0) {
+                    displayMessage("Encrypted " + sealed + " existing password entries.");
+                }
+            }, "Error encrypting passwords: ");
+        }, "Error unlocking vault: ");
     }
 
     private void initializePasswordFile() {
         File file = new File(PASSWORD_FILE);
         if (!file.exists()) {
-            try {
-                // Create file with header only
-                passwordManager.createNewFile(PASSWORD_FILE);
-                showTemporaryStatus("Password file created successfully!", SUCCESS_COLOR);
-            } catch (IOException ex) {
-                showError("Error creating password file: " + ex.getMessage());
-            }
+            // Create file with header only
+            runInBackground(passwordManager.createNewFile(PASSWORD_FILE),
+                ignored -> showTemporaryStatus("Password file created successfully!", SUCCESS_COLOR),
+                "Error creating password file: ");
         }
     }
 
@@ -167,6 +224,23 @@ public class PasswordGeneratorGUI extends JFrame {
         }
 
         sidebar.add(Box.createVerticalGlue());
+
+        // Busy indicator shown while database work is in flight
+        activityLabel = new JLabel("Working...");
+        activityLabel.setForeground(DISABLED_TEXT);
+        activityLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        activityLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        activityLabel.setVisible(false);
+        activityIndicator = new JProgressBar();
+        activityIndicator.setForeground(PRIMARY_COLOR);
+        activityIndicator.setBackground(FIELD_BACKGROUND);
+        activityIndicator.setBorder(BorderFactory.createEmptyBorder());
+        activityIndicator.setMaximumSize(new Dimension(200, 6));
+        activityIndicator.setAlignmentX(Component.CENTER_ALIGNMENT);
+        activityIndicator.setVisible(false);
+        sidebar.add(activityLabel);
+        sidebar.add(Box.createVerticalStrut(5));
+        sidebar.add(activityIndicator);
         return sidebar;
     }
 
@@ -328,31 +402,62 @@ public class PasswordGeneratorGUI extends JFrame {
         JPanel searchPanel = createSearchPanel();
         panel.add(searchPanel, BorderLayout.NORTH);
 
-        // Password list in the center
-        displayArea = new JTextArea();
+        // Password list in the center; rows are paged in from the database as they scroll into view
+        passwordTableModel = new VaultTableModel(passwordManager, PAGE_SIZE, MAX_CACHED_PAGES);
+        passwordTable = new JTable(passwordTableModel);
+        passwordTable.setFont(new Font("JetBrains Mono", Font.PLAIN, 14));
+        passwordTable.setRowHeight(26);
+        passwordTable.setBackground(FIELD_BACKGROUND);
+        passwordTable.setForeground(TEXT_COLOR);
+        passwordTable.setGridColor(PANEL_BACKGROUND);
+        passwordTable.setSelectionBackground(PRIMARY_COLOR);
+        passwordTable.setSelectionForeground(TEXT_COLOR);
+        passwordTable.setFillsViewportHeight(true);
+        passwordTable.getTableHeader().setReorderingAllowed(false);
+        passwordTable.getTableHeader().setBackground(SIDEBAR_COLOR);
+        passwordTable.getTableHeader().setForeground(ACCENT_COLOR);
+        passwordTable.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 14));
+
+        JScrollPane scrollPane = new JScrollPane(passwordTable);
+        scrollPane.setBorder(createModernBorder("Saved Passwords"));
+        scrollPane.setOpaque(false);
+        scrollPane.getViewport().setBackground(FIELD_BACKGROUND);
+        styleScrollPane(scrollPane);
+
+        // Messages and search results below the list
+        displayArea = new JTextArea(5, 0);
         displayArea.setEditable(false);
         displayArea.setFont(new Font("JetBrains Mono", Font.PLAIN, 14));
         displayArea.setBackground(FIELD_BACKGROUND);
         displayArea.setForeground(TEXT_COLOR);
         displayArea.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
-        JScrollPane scrollPane = new JScrollPane(displayArea);
-        scrollPane.setBorder(createModernBorder("Saved Passwords"));
-        scrollPane.setOpaque(false);
-        scrollPane.getViewport().setOpaque(false);
-        styleScrollPane(scrollPane);
+        JScrollPane detailsPane = new JScrollPane(displayArea);
+        detailsPane.setBorder(BorderFactory.createLineBorder(PRIMARY_COLOR.darker(), 1));
+        styleScrollPane(detailsPane);
 
-        panel.add(scrollPane, BorderLayout.CENTER);
+        JPanel listPanel = new JPanel(new BorderLayout(0, 10));
+        listPanel.setOpaque(false);
+        listPanel.add(scrollPane, BorderLayout.CENTER);
+        listPanel.add(detailsPane, BorderLayout.SOUTH);
+
+        panel.add(listPanel, BorderLayout.CENTER);
 
         // Buttons at the bottom
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 10));
         buttonPanel.setOpaque(false);
 
         JButton refreshButton = createStyledButton("Refresh List", e -> viewPasswords());
+        JButton copySelectedButton = createStyledButton("Copy Password", e -> copySelectedPassword());
         JButton removeButton = createStyledButton("Remove Selected", e -> removePassword());
+        JButton exportButton = createStyledButton("Export CSV", e -> exportPasswords());
+        JButton importButton = createStyledButton("Import CSV", e -> importPasswords());
 
         buttonPanel.add(refreshButton);
+        buttonPanel.add(copySelectedButton);
         buttonPanel.add(removeButton);
+        buttonPanel.add(exportButton);
+        buttonPanel.add(importButton);
 
         panel.add(buttonPanel, BorderLayout.SOUTH);
         
@@ -498,8 +603,29 @@ public class PasswordGeneratorGUI extends JFrame {
         }
     }
 
+    // The table only holds metadata, so the selected row's password is read by id right here
+    private void copySelectedPassword() {
+        int row = passwordTable.getSelectedRow();
+        PasswordManager.EntryMetadata entry = row < 0 ? null : passwordTableModel.getEntryAt(passwordTable.convertRowIndexToModel(row));
+        if (entry == null) {
+            showError("Please select a password entry");
+            return;
+        }
+
+        runInBackground(passwordManager.readSecret(entry.getId()), password -> {
+            if (password == null) {
+                showTemporaryStatus("Entry no longer exists.", WARNING_COLOR);
+                return;
+            }
+            StringSelection selection = new StringSelection(password);
+            Toolkit.getDefaultToolkit().getSystemClipboard().setContents(selection, selection);
+            showTemporaryStatus("Password copied to clipboard!", SUCCESS_COLOR);
+        }, "Error copying password: ");
+    }
+
     private void updatePasswordStrength(String password) {
-        int strength = calculatePasswordStrength(password);
+        PasswordStrength.Result result = PasswordStrength.evaluate(password);
+        int strength = result.getScore();
         strengthIndicator.setValue(strength);
         
         // Update colors based on strength
@@ -525,6 +651,7 @@ public class PasswordGeneratorGUI extends JFrame {
         
         strengthLabel.setText(strengthText);
         strengthLabel.setForeground(indicatorColor);
+        strengthLabel.setToolTipText(String.format("About %.0f bits of entropy", result.getEntropyBits()));
         
         // Style the progress bar
         strengthIndicator.setForeground(indicatorColor);
@@ -548,116 +675,215 @@ public class PasswordGeneratorGUI extends JFrame {
         timer.start();
     }
 
-    private int calculatePasswordStrength(String password) {
-        int strength = 0;
-        
-        // Length contribution
-        strength += Math.min(password.length() * 4, 40);
-        
-        // Character variety contribution
-        if (Pattern.compile("[A-Z]").matcher(password).find()) strength += 15;
-        if (Pattern.compile("[a-z]").matcher(password).find()) strength += 15;
-        if (Pattern.compile("[0-9]").matcher(password).find()) strength += 15;
-        if (Pattern.compile("[^A-Za-z0-9]").matcher(password).find()) strength += 15;
-        
-        return Math.min(strength, 100);
-    }
-
     private void generateAndDisplayPassword() {
-        String password = generatePassword();
-        if (password != null) {
-            generatedPasswordField.setText(password);
-            generatedPasswordField.setEchoChar('•');
-            showPasswordCheckBox.setSelected(false);
-            updatePasswordStrength(password);
-            showTemporaryStatus("Password generated successfully!", SUCCESS_COLOR);
+        CompletableFuture<String> generation = generatePassword();
+        if (generation != null) {
+            runInBackground(generation, password -> {
+                generatedPasswordField.setText(password);
+                generatedPasswordField.setEchoChar('•');
+                showPasswordCheckBox.setSelected(false);
+                updatePasswordStrength(password);
+                showTemporaryStatus("Password generated successfully!", SUCCESS_COLOR);
+            }, "Error generating password: ");
         }
     }
 
     private void savePassword() {
-        try {
-            String password = new String(generatedPasswordField.getPassword());
-            if (password.isEmpty()) {
-                showError("Please generate a password first");
-                return;
-            }
+        String password = new String(generatedPasswordField.getPassword());
+        if (password.isEmpty()) {
+            showError("Please generate a password first");
+            return;
+        }
 
-            if (websiteNameField.getText().isEmpty()) {
-                showError("Please enter a website name");
-                return;
-            }
+        if (websiteNameField.getText().isEmpty()) {
+            showError("Please enter a website name");
+            return;
+        }
 
-            String websiteName = websiteNameField.getText();
-            String websiteLink = websiteLinkField.getText();
-            String username = usernameField.getText();
+        String websiteName = websiteNameField.getText();
+        String websiteLink = websiteLinkField.getText();
+        String username = usernameField.getText();
 
-            passwordManager.appendToFile(null, websiteName, websiteLink, username, password);
+        runInBackground(passwordManager.appendToFile(null, websiteName, websiteLink, username, password), ignored -> {
+            // The table picks the new row up from the vault's change event
             displayMessage("Password saved successfully!");
-            displayPasswords();
             showTemporaryStatus("Password saved!", SUCCESS_COLOR);
             
             // Clear input fields after successful save
             clearDisplay();
-        } catch (SQLException ex) {
-            showError("Error saving password: " + ex.getMessage());
-        }
+        }, "Error saving password: ");
     }
 
     private void viewPasswords() {
-        try {
-            displayPasswords();
-            showTemporaryStatus("Passwords loaded!", SUCCESS_COLOR);
-        } catch (SQLException ex) {
-            showError("Error viewing passwords: " + ex.getMessage());
-        }
+        searchField.setText("");
+        displayPasswords(() -> showTemporaryStatus("Passwords loaded!", SUCCESS_COLOR));
     }
 
     private void searchPassword() {
-        try {
-            String searchTerm = searchField.getText();
-            if (searchTerm.isEmpty()) {
-                showError("Please enter a search term");
+        String searchTerm = searchField.getText();
+        if (searchTerm.isEmpty()) {
+            showError("Please enter a search term");
+            return;
+        }
+
+        // Supersedes any live search still in flight
+        searchDebounce.stop();
+        int sequence = ++searchSequence;
+        runInBackground(passwordManager.searchMetadata(searchTerm, LIVE_SEARCH_RESULTS, 0), entries -> {
+            if (sequence != searchSequence) {
                 return;
             }
-
-            PasswordManager.PasswordEntry entry = passwordManager.findPassword(null, searchTerm);
-            if (entry != null) {
-                displayMessage(String.format("Found entry:\nWebsite: %s\nUsername: %s\nPassword: %s\nDate: %s",
+            passwordTableModel.showResults(entries);
+            if (!entries.isEmpty()) {
+                PasswordManager.EntryMetadata entry = entries.get(0);
+                displayMessage(String.format("Found %d entries, best match:\nWebsite: %s\nUsername: %s\nDate: %s",
+                    entries.size(),
                     entry.getAppName(),
                     entry.getUsername(),
-                    entry.getPassword(),
                     entry.getDateTime()));
                 showTemporaryStatus("Password found!", SUCCESS_COLOR);
             } else {
                 showTemporaryStatus("No matching password found.", WARNING_COLOR);
             }
-        } catch (SQLException ex) {
-            showError("Error searching password: " + ex.getMessage());
+        }, "Error searching password: ");
+    }
+
+    private void runLiveSearch() {
+        String searchTerm = searchField.getText().trim();
+        int sequence = ++searchSequence;
+        if (searchTerm.isEmpty()) {
+            passwordTableModel.clearResults();
+            return;
         }
+        passwordManager.quickSearch(searchTerm, LIVE_SEARCH_RESULTS).whenComplete((entries, error) -> SwingUtilities.invokeLater(() -> {
+            if (sequence != searchSequence) {
+                return;
+            }
+            if (error != null) {
+                showError("Error searching passwords: " + AsyncPasswordManager.rootCause(error).getMessage());
+            } else {
+                passwordTableModel.showResults(entries);
+            }
+        }));
     }
 
+    // Removes the selected rows by id. With nothing selected, asks for a website or username and
+    // confirms the matching entries before removing exactly those.
     private void removePassword() {
-        try {
-            String input = JOptionPane.showInputDialog(this, "Enter website name or username to remove:");
-            if (input == null || input.isEmpty()) {
-                showError("Please enter a website name or username");
-                return;
+        List<PasswordManager.EntryMetadata> selected = new ArrayList<>();
+        for (int row : passwordTable.getSelectedRows()) {
+            PasswordManager.EntryMetadata entry = passwordTableModel.getEntryAt(passwordTable.convertRowIndexToModel(row));
+            if (entry != null) {
+                selected.add(entry);
             }
+        }
+        if (!selected.isEmpty()) {
+            confirmAndRemove(selected);
+            return;
+        }
+
+        String input = JOptionPane.showInputDialog(this, "Enter website name or username to remove:");
+        if (input == null || input.isEmpty()) {
+            showError("Please enter a website name or username");
+            return;
+        }
+
+        runInBackground(passwordManager.previewRemoveByIdentifier(input), matches -> {
+            if (matches.isEmpty()) {
+                showTemporaryStatus("No matching entry found.", WARNING_COLOR);
+            } else {
+                confirmAndRemove(matches);
+            }
+        }, "Error removing password: ");
+    }
+
+    private void confirmAndRemove(List<PasswordManager.EntryMetadata> entries) {
+        StringBuilder message = new StringBuilder("Remove ").append(entries.size())
+            .append(entries.size() == 1 ? " entry?\n" : " entries?\n");
+        for (int i = 0; i < Math.min(entries.size(), 10); i++) {
+            PasswordManager.EntryMetadata entry = entries.get(i);
+            message.append("\n").append(entry.getAppName());
+            if (entry.getUsername() != null && !entry.getUsername().isEmpty()) {
+                message.append(" (").append(entry.getUsername()).append(")");
+            }
+        }
+        if (entries.size() > 10) {
+            message.append("\n... and ").append(entries.size() - 10).append(" more");
+        }
+        if (JOptionPane.showConfirmDialog(this, message.toString(), "Remove Passwords",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
 
-            boolean removed = passwordManager.removePasswordByIdentifier(null, input);
-            if (removed) {
-                displayMessage("Password entry removed successfully!");
-                displayPasswords();
+        List<Long> ids = new ArrayList<>(entries.size());
+        for (PasswordManager.EntryMetadata entry : entries) {
+            ids.add(entry.getId());
+        }
+        runInBackground(passwordManager.deleteByIds(ids), removed -> {
+            if (removed > 0) {
+                displayMessage(removed == 1 ? "Password entry removed successfully!" : removed + " password entries removed successfully!");
                 showTemporaryStatus("Password removed!", SUCCESS_COLOR);
             } else {
                 showTemporaryStatus("No matching entry found.", WARNING_COLOR);
             }
-        } catch (SQLException ex) {
-            showError("Error removing password: " + ex.getMessage());
+        }, "Error removing password: ");
+    }
+
+    private void exportPasswords() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("passwords.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
         }
+        if (JOptionPane.showConfirmDialog(this, "The file will contain every password in plaintext. Export anyway?",
+                "Export Passwords", JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        runInBackground(passwordManager.exportCsv(chooser.getSelectedFile().toPath()), stats -> {
+            displayMessage("Exported " + stats);
+            showTemporaryStatus("Passwords exported!", SUCCESS_COLOR);
+        }, "Error exporting passwords: ");
+    }
+
+    // The table reloads itself from the vault's change event once the import is committed
+    private void importPasswords() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        runInBackground(passwordManager.importCsv(chooser.getSelectedFile().toPath()), stats -> {
+            displayMessage("Imported " + stats);
+            showTemporaryStatus("Passwords imported!", SUCCESS_COLOR);
+        }, "Error importing passwords: ");
+    }
+
+    // Waits for task off the event dispatch thread while the busy indicator is shown, then runs
+    // onSuccess on the event dispatch thread or reports the failure with errorPrefix
+    private <T> void runInBackground(CompletableFuture<T> task,
+                                     Consumer<T> onSuccess, String errorPrefix) {
+        setBusy(1);
+        task.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            setBusy(-1);
+            if (error != null) {
+                showError(errorPrefix + AsyncPasswordManager.rootCause(error).getMessage());
+            } else {
+                onSuccess.accept(result);
+            }
+        }));
+    }
+
+    private void setBusy(int delta) {
+        pendingOperations += delta;
+        boolean busy = pendingOperations > 0;
+        activityLabel.setVisible(busy);
+        activityIndicator.setVisible(busy);
+        activityIndicator.setIndeterminate(busy);
+        setCursor(busy ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR) : Cursor.getDefaultCursor());
     }
 
-    private String generatePassword() {
+    private CompletableFuture<String> generatePassword() {
         try {
             int upperCase = Integer.parseInt(upperCaseField.getText());
             int lowerCase = Integer.parseInt(lowerCaseField.getText());
@@ -683,36 +909,13 @@ public class PasswordGeneratorGUI extends JFrame {
     }
 
     // Replace displayFileContents with displayPasswords
-    private void displayPasswords() throws SQLException {
-        StringBuilder sb = new StringBuilder();
-        sb.append("\n");
-        String header = String.format("%-20s %-30s %-15s %-20s %-10s %-20s%n", 
-            "Website", "Link", "Username", "Password", "Length", "Date/Time");
-        displayArea.setText(header);
-        displayArea.setForeground(PRIMARY_COLOR);
-        
-        sb.append("─".repeat(120) + "\n");
-        
-        for (PasswordManager.PasswordEntry entry : passwordManager.readFile(null)) {
-            sb.append(String.format("%-20s %-30s %-15s %-20s %-10d %-20s%n",
-                truncateString(entry.getAppName(), 18),
-                truncateString(entry.getLink(), 28),
-                truncateString(entry.getUsername(), 13),
-                "••••••••",
-                entry.getLength(),
-                entry.getDateTime()));
-        }
-        sb.append("─".repeat(120) + "\n");
-
-        displayArea.append(sb.toString());
-        displayArea.setCaretPosition(0);
+    private void displayPasswords() {
+        displayPasswords(() -> { });
     }
 
-    private String truncateString(String str, int length) {
-        if (str == null || str.length() <= length) {
-            return str;
-        }
-        return str.substring(0, length - 2) + "..";
+    private void displayPasswords(Runnable afterLoad) {
+        // Only the row count is queried here; the table fetches the rows it actually shows
+        runInBackground(passwordTableModel.reload(), rows -> afterLoad.run(), "Error loading passwords: ");
     }
 
     private void displayMessage(String message) {
@@ -753,6 +956,19 @@ public class PasswordGeneratorGUI extends JFrame {
         
         searchField = createStyledTextField(30);
         searchField.setPreferredSize(new Dimension(300, 35));
+        searchField.setToolTipText("Type to filter by website or username");
+
+        // Search as you type, once typing pauses
+        searchDebounce = new Timer(SEARCH_DEBOUNCE_MILLIS, e -> runLiveSearch());
+        searchDebounce.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { searchDebounce.restart(); }
+            @Override
+            public void removeUpdate(DocumentEvent e) { searchDebounce.restart(); }
+            @Override
+            public void changedUpdate(DocumentEvent e) { searchDebounce.restart(); }
+        });
         
         JButton searchButton = createStyledButton("Search", e -> searchPassword());
         
@@ -1,30 +1,100 @@
 import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.sql.*;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class PasswordManager {
     private static final String SYMBOLS = "!@#$%^&*()_+[]{};:.<>?/`~|";
+    private static final char[] SYMBOL_CHARS = SYMBOLS.toCharArray();
+    // One generator per thread: no contention and no reseeding on every character
+    private static final ThreadLocal<RandomBuffer> RANDOM = ThreadLocal.withInitial(RandomBuffer::new);
+    // Target size of one block of newline-separated passwords in the bulk writer path
+    private static final int BULK_CHUNK_CHARS = 64 * 1024;
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final String DB_URL = "jdbc:sqlite:passwords.db";
+    // Every column but the password, for views that do not show it
+    private static final String METADATA_COLUMNS = "id, website, link, username, length, created_at";
+    private static final String INSERT_SQL = "INSERT INTO passwords (website, link, username, password, length, created_at, website_lc, username_lc) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    // The trigram tokenizer cannot match anything shorter than this
+    private static final int MIN_FTS_TERM_LENGTH = 3;
+    // Rows buffered in the driver before executeBatch is called
+    private static final int INSERT_BATCH_SIZE = 1_000;
+    private static final int DEFAULT_READ_CONNECTIONS = Math.min(4, Runtime.getRuntime().availableProcessors());
+    private static final long DEFAULT_POOL_TIMEOUT_MILLIS = 5_000;
+    private static final int DEFAULT_LOOKUP_CACHE_SIZE = 1_024;
+    // Rows per query while exporting
+    private static final int EXPORT_PAGE_SIZE = 1_000;
+    // Seconds between metrics reports on stderr; reporting is off unless this system property is set
+    private static final String METRICS_REPORT_PROPERTY = "passwordmanager.metrics.reportSeconds";
     
-    // Add this line to declare the connection field
-    private Connection connection;
+    private final String dbUrl;
+    // Readers share a small pool of WAL connections; all writes go through one serialized connection
+    private ConnectionPool pool;
+    // Rows written per transaction by appendAll
+    private volatile int batchCommitInterval = 10_000;
+    private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    // Recent findPassword answers by normalized term; null when caching is switched off
+    private volatile EntryCache lookupCache = new EntryCache(DEFAULT_LOOKUP_CACHE_SIZE);
+    // Serves quickSearch; null until first built
+    private volatile TrigramIndex searchIndex;
+    // Set once a master password has been chosen for the vault; from then on new secrets are sealed
+    private volatile boolean encrypted;
+    // Key derived by unlock; null while the vault is locked
+    private volatile VaultCipher cipher;
+    // Handed to the entries read from this vault, which fetch the key whenever they are opened
+    private final Supplier<VaultCipher> currentCipher = () -> cipher;
+    private final VaultMetrics metrics = new VaultMetrics();
+
+    public enum JournalMode { DELETE, TRUNCATE, PERSIST, MEMORY, WAL, OFF }
+
+    public enum SynchronousMode { OFF, NORMAL, FULL, EXTRA }
 
     public PasswordManager() {
-        initializeDatabase();
+        this(DB_URL);
+    }
+
+    // Opens the vault at a specific JDBC URL, e.g. a scratch database for benchmarks
+    public PasswordManager(String dbUrl) {
+        this(dbUrl, DEFAULT_READ_CONNECTIONS, DEFAULT_POOL_TIMEOUT_MILLIS);
     }
 
-    private void initializeDatabase() {
+    // readConnections bounds how many reads run at once; timeoutMillis bounds every wait for a
+    // connection or a database lock
+    public PasswordManager(String dbUrl, int readConnections, long timeoutMillis) {
+        this.dbUrl = dbUrl;
+        initializeDatabase(readConnections, timeoutMillis);
+        metrics.register(dbUrl);
+        long reportSeconds = Long.getLong(METRICS_REPORT_PROPERTY, 0);
+        if (reportSeconds > 0) {
+            metrics.startReporting(reportSeconds, TimeUnit.SECONDS, System.err::println);
+        }
+    }
+
+    private void initializeDatabase(int readConnections, long timeoutMillis) {
         try {
             // Explicitly load the SQLite JDBC driver
             Class.forName("org.sqlite.JDBC");
             
-            connection = DriverManager.getConnection("jdbc:sqlite:passwords.db");
+            pool = new ConnectionPool(dbUrl, readConnections, timeoutMillis);
             // Add code to create the table if it doesn't exist
-            createTableIfNotExists();
+            write(this::createTableIfNotExists);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to initialize database", e);
         } catch (ClassNotFoundException e) {
@@ -33,7 +103,7 @@ public class PasswordManager {
     }
     
     // Add this method to create the table if it doesn't exist
-    private void createTableIfNotExists() throws SQLException {
+    private Void createTableIfNotExists(ConnectionPool.PooledConnection db) throws SQLException {
         String sql = "CREATE TABLE IF NOT EXISTS passwords (" +
                      "id INTEGER PRIMARY KEY AUTOINCREMENT," +
                      "website TEXT NOT NULL," +
@@ -41,167 +111,1742 @@ public class PasswordManager {
                      "username TEXT," +
                      "password TEXT NOT NULL," +
                      "length INTEGER," +
-                     "datetime TEXT)";
+                     "created_at INTEGER NOT NULL DEFAULT 0," +
+                     "website_lc TEXT," +
+                     "username_lc TEXT)";
         
-        try (Statement stmt = connection.createStatement()) {
+        try (Statement stmt = db.connection().createStatement()) {
             stmt.execute(sql);
         }
+        migrateTimestamps(db);
+        createSearchStructures(db);
+        createVaultMeta(db);
+        return null;
+    }
+
+    // Key derivation parameters and the key check of encrypted vaults. Secrets themselves are sealed
+    // into the password column as BLOBs, so typeof(password) tells encrypted rows from plaintext
+    // ones left over from before the vault had a master password.
+    private void createVaultMeta(ConnectionPool.PooledConnection db) throws SQLException {
+        try (Statement stmt = db.connection().createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS vault_meta (name TEXT PRIMARY KEY, value BLOB NOT NULL)");
+        }
+        encrypted = readVaultMeta(db).containsKey("key_check");
     }
 
-    public static class PasswordEntry {
+    private static Map<String, Object> readVaultMeta(ConnectionPool.PooledConnection db) throws SQLException {
+        Map<String, Object> meta = new HashMap<>();
+        try (ResultSet rs = db.prepare("SELECT name, value FROM vault_meta").executeQuery()) {
+            while (rs.next()) {
+                meta.put(rs.getString(1), rs.getObject(2));
+            }
+        }
+        return meta;
+    }
+
+    // Creation time is stored as epoch milliseconds in an indexed INTEGER column. Vaults from before
+    // that kept a formatted local-time TEXT column named datetime; it is converted once here and
+    // then left alone, since SQLite cannot drop columns on every version the driver may bundle.
+    private void migrateTimestamps(ConnectionPool.PooledConnection db) throws SQLException {
+        Connection connection = db.connection();
+        Set<String> columns = tableColumns(connection);
+
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            if (!columns.contains("created_at")) {
+                stmt.execute("ALTER TABLE passwords ADD COLUMN created_at INTEGER NOT NULL DEFAULT 0");
+            }
+            if (columns.contains("datetime")) {
+                // The 'utc' modifier reads the text as local time, which is how it was written
+                stmt.executeUpdate("UPDATE passwords SET created_at = " +
+                                   "COALESCE(CAST(strftime('%s', datetime, 'utc') AS INTEGER) * 1000, 0) " +
+                                   "WHERE created_at = 0 AND datetime IS NOT NULL");
+            }
+            stmt.execute("DROP INDEX IF EXISTS idx_passwords_datetime_id");
+            // Serves the newest-first listing, its keyset pagination and date-range queries
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_passwords_created_at ON passwords(created_at, id)");
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static Set<String> tableColumns(Connection connection) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(passwords)")) {
+            while (rs.next()) {
+                columns.add(rs.getString("name"));
+            }
+        }
+        return columns;
+    }
+
+    // Lowercased copies of website and username with plain indexes serve exact and prefix lookups.
+    // A trigram FTS5 index over the same columns, kept in sync by triggers, serves substring
+    // search. Vaults created before these existed are migrated in place on first open.
+    private void createSearchStructures(ConnectionPool.PooledConnection db) throws SQLException {
+        Connection connection = db.connection();
+        Set<String> columns = tableColumns(connection);
+        boolean ftsExists;
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'passwords_fts'")) {
+            ftsExists = rs.next();
+        }
+
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            if (!columns.contains("website_lc")) {
+                stmt.execute("ALTER TABLE passwords ADD COLUMN website_lc TEXT");
+            }
+            if (!columns.contains("username_lc")) {
+                stmt.execute("ALTER TABLE passwords ADD COLUMN username_lc TEXT");
+            }
+            // Must run before the triggers exist, or the FTS index would be fed stale values
+            backfillNormalizedColumns(connection);
+
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_passwords_website_lc ON passwords(website_lc)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_passwords_username_lc ON passwords(username_lc)");
+
+            if (!ftsExists) {
+                stmt.execute("CREATE VIRTUAL TABLE passwords_fts USING fts5(" +
+                             "website_lc, username_lc, content='passwords', content_rowid='id', tokenize='trigram')");
+                stmt.execute("INSERT INTO passwords_fts(passwords_fts) VALUES ('rebuild')");
+            }
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS passwords_fts_insert AFTER INSERT ON passwords BEGIN " +
+                         "INSERT INTO passwords_fts(rowid, website_lc, username_lc) VALUES (new.id, new.website_lc, new.username_lc); " +
+                         "END");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS passwords_fts_delete AFTER DELETE ON passwords BEGIN " +
+                         "INSERT INTO passwords_fts(passwords_fts, rowid, website_lc, username_lc) VALUES ('delete', old.id, old.website_lc, old.username_lc); " +
+                         "END");
+            // Only the indexed columns, so that re-encrypting a password leaves the FTS index alone
+            stmt.execute("DROP TRIGGER IF EXISTS passwords_fts_update");
+            stmt.execute("CREATE TRIGGER passwords_fts_update AFTER UPDATE OF website_lc, username_lc ON passwords BEGIN " +
+                         "INSERT INTO passwords_fts(passwords_fts, rowid, website_lc, username_lc) VALUES ('delete', old.id, old.website_lc, old.username_lc); " +
+                         "INSERT INTO passwords_fts(rowid, website_lc, username_lc) VALUES (new.id, new.website_lc, new.username_lc); " +
+                         "END");
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    // Normalization happens in Java rather than with SQLite's LOWER, which only folds ASCII
+    private static void backfillNormalizedColumns(Connection connection) throws SQLException {
+        String select = "SELECT id, website, username FROM passwords WHERE website_lc IS NULL";
+        String update = "UPDATE passwords SET website_lc = ?, username_lc = ? WHERE id = ?";
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(select);
+             PreparedStatement pstmt = connection.prepareStatement(update)) {
+            int pending = 0;
+            while (rs.next()) {
+                pstmt.setString(1, normalize(rs.getString("website")));
+                pstmt.setString(2, normalize(rs.getString("username")));
+                pstmt.setLong(3, rs.getLong("id"));
+                pstmt.addBatch();
+                if (++pending == INSERT_BATCH_SIZE) {
+                    pstmt.executeBatch();
+                    pending = 0;
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    // What list and search views show of an entry: everything but the password, which stays in the
+    // database until readSecret asks for it by id
+    public static class EntryMetadata {
+        private final long id;
         private final String appName;
         private final String link;
         private final String username;
-        private final String password;
         private final int length;
-        private final String dateTime;
+        private final long createdAt;
 
-        public PasswordEntry(String appName, String link, String username, String password, int length, String dateTime) {
+        public EntryMetadata(long id, String appName, String link, String username, int length, long createdAt) {
+            this.id = id;
             this.appName = appName;
             this.link = link;
             this.username = username;
-            this.password = password;
             this.length = length;
-            this.dateTime = dateTime;
+            this.createdAt = createdAt;
         }
 
+        public long getId() { return id; }
         public String getAppName() { return appName; }
         public String getLink() { return link; }
         public String getUsername() { return username; }
-        public String getPassword() { return password; }
         public int getLength() { return length; }
-        public String getDateTime() { return dateTime; }
+        public long getCreatedAt() { return createdAt; }
+        // Formatted only when asked for, so loading entries never pays for it
+        public String getDateTime() { return formatDateTime(createdAt); }
+    }
 
+    public static class PasswordEntry extends EntryMetadata {
+        private final String password;
+        // Entries read from an encrypted vault keep the sealed secret instead of password and open it
+        // on every getPassword call, so listing the vault decrypts nothing. The key is looked up at
+        // that point, so an entry read while the vault was locked opens once it is unlocked.
+        private final byte[] sealed;
+        private final Supplier<VaultCipher> keys;
+
+        // createdAt is in epoch milliseconds; 0 means unknown, and inserts stamp such entries with
+        // the current time
+        public PasswordEntry(String appName, String link, String username, String password, int length, long createdAt) {
+            this(0, appName, link, username, password, length, createdAt);
+        }
+
+        // id is the vault row id; 0 for entries that have not been stored yet
+        public PasswordEntry(long id, String appName, String link, String username, String password, int length, long createdAt) {
+            super(id, appName, link, username, length, createdAt);
+            this.password = password;
+            this.sealed = null;
+            this.keys = null;
+        }
+
+        PasswordEntry(long id, String appName, String link, String username, byte[] sealed, Supplier<VaultCipher> keys,
+                      int length, long createdAt) {
+            super(id, appName, link, username, length, createdAt);
+            this.password = null;
+            this.sealed = sealed;
+            this.keys = keys;
+        }
+
+        // dateTime uses the display format, yyyy-MM-dd HH:mm:ss in local time
+        public PasswordEntry(String appName, String link, String username, String password, int length, String dateTime) {
+            this(appName, link, username, password, length, parseDateTime(dateTime));
+        }
+
+        public String getPassword() {
+            if (sealed == null) {
+                return password;
+            }
+            VaultCipher cipher = keys.get();
+            if (cipher == null) {
+                throw new IllegalStateException("The vault is locked");
+            }
+            return cipher.open(sealed);
+        }
+
+        // The secret sealed under cipher, reusing the stored sealed bytes where there are some
+        byte[] sealedPassword(VaultCipher cipher) {
+            if (sealed != null) {
+                return sealed;
+            }
+            if (password == null) {
+                return null;
+            }
+            if (cipher == null) {
+                throw new IllegalStateException("The vault is locked");
+            }
+            return cipher.seal(password);
+        }
+
+        // One CSV row in the export format, quoted where needed, with the password masked so that
+        // logging an entry neither leaks the secret nor needs the vault unlocked
         @Override
         public String toString() {
-            return String.format("%s,%s,%s,%s,%d,%s", appName, link, username, password, length, dateTime);
+            StringBuilder row = new StringBuilder(64);
+            VaultCsv.appendRow(row, this, TableRenderer.PASSWORD_MASK);
+            return row.toString();
+        }
+    }
+
+    // Compares entries in listing order: newest first, later ids first on equal timestamps
+    public static final Comparator<EntryMetadata> LISTING_ORDER =
+        Comparator.comparingLong(EntryMetadata::getCreatedAt).thenComparingLong(EntryMetadata::getId).reversed();
+
+    // What a write did to the vault. INSERTED and DELETED carry the affected rows with their ids but
+    // without passwords; INVALIDATED means too much changed to describe, and views should reload.
+    public static class ChangeEvent {
+        public enum Type { INSERTED, DELETED, INVALIDATED }
+
+        private final Type type;
+        private final List<EntryMetadata> entries;
+
+        private ChangeEvent(Type type, List<EntryMetadata> entries) {
+            this.type = type;
+            this.entries = Collections.unmodifiableList(entries);
+        }
+
+        public Type getType() { return type; }
+        public List<EntryMetadata> getEntries() { return entries; }
+    }
+
+    // Called on the writing thread once the change is committed, while the write connection is
+    // still held, so events arrive in commit order. Listeners should return quickly; those that
+    // touch a UI must hand the event over to that UI's thread themselves.
+    public interface ChangeListener {
+        void vaultChanged(ChangeEvent event);
+    }
+
+    // Snapshot of the findPassword cache counters. estimatedBytes is an approximation of the heap
+    // held by cached entries, meant for sizing the cache rather than exact accounting.
+    public static class CacheStats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+        private final int maxSize;
+        private final long estimatedBytes;
+
+        CacheStats(long hits, long misses, long evictions, int size, int maxSize, long estimatedBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+            this.maxSize = maxSize;
+            this.estimatedBytes = estimatedBytes;
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public int getSize() { return size; }
+        public int getMaxSize() { return maxSize; }
+        public long getEstimatedBytes() { return estimatedBytes; }
+
+        public double hitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d hitRatio=%.3f evictions=%d size=%d/%d estimatedBytes=%d",
+                hits, misses, hitRatio(), evictions, size, maxSize, estimatedBytes);
+        }
+    }
+
+    // Outcome of a CSV export or import, or of a mapped vault export
+    public static class TransferStats {
+        private final long rows;
+        private final long elapsedNanos;
+
+        TransferStats(long rows, long elapsedNanos) {
+            this.rows = rows;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRows() { return rows; }
+        public long getElapsedMillis() { return elapsedNanos / 1_000_000; }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : rows * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rows in %d ms (%.0f rows/s)", rows, getElapsedMillis(), getRowsPerSecond());
+        }
+    }
+
+    // Position in the newest-first listing: the sort key of the last row already seen
+    public static class PageKey {
+        private final long createdAt;
+        private final long id;
+
+        private PageKey(long createdAt, long id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+    }
+
+    public static class Page<T extends EntryMetadata> {
+        private final List<T> entries;
+        private final PageKey nextKey;
+
+        private Page(List<T> entries, PageKey nextKey) {
+            this.entries = entries;
+            this.nextKey = nextKey;
+        }
+
+        public List<T> getEntries() { return entries; }
+        // Key to pass to readPage for the following page, or null if this is the last one
+        public PageKey getNextKey() { return nextKey; }
+        public boolean hasMore() { return nextKey != null; }
+    }
+
+    public static class PasswordSpec {
+        private final int upperCase;
+        private final int lowerCase;
+        private final int numbers;
+        private final int symbols;
+
+        public PasswordSpec(int upperCase, int lowerCase, int numbers, int symbols) {
+            if (upperCase < 0 || lowerCase < 0 || numbers < 0 || symbols < 0) {
+                throw new IllegalArgumentException("Character counts must not be negative");
+            }
+            this.upperCase = upperCase;
+            this.lowerCase = lowerCase;
+            this.numbers = numbers;
+            this.symbols = symbols;
+        }
+
+        public int getUpperCase() { return upperCase; }
+        public int getLowerCase() { return lowerCase; }
+        public int getNumbers() { return numbers; }
+        public int getSymbols() { return symbols; }
+        public int length() { return upperCase + lowerCase + numbers + symbols; }
+
+        @Override
+        public String toString() {
+            return String.format("upper=%d,lower=%d,numbers=%d,symbols=%d", upperCase, lowerCase, numbers, symbols);
+        }
+    }
+
+    // Per-thread source of uniform random indices. The default SecureRandom on Linux (NativePRNG)
+    // serializes every thread on one global lock, so each thread owns a DRBG instance that is
+    // seeded once and never shared. Bytes are drawn in blocks because every SecureRandom call
+    // has a large fixed cost, and small bounds consume a single byte per draw.
+    private static final class RandomBuffer {
+        private final SecureRandom random = newSecureRandom();
+        private final byte[] buffer = new byte[512];
+        private int position = buffer.length;
+
+        private static SecureRandom newSecureRandom() {
+            try {
+                return SecureRandom.getInstance("DRBG");
+            } catch (NoSuchAlgorithmException e) {
+                return new SecureRandom();
+            }
+        }
+
+        private int nextByte() {
+            if (position == buffer.length) {
+                random.nextBytes(buffer);
+                position = 0;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        // Uniform value in [0, bound), using rejection sampling to avoid modulo bias
+        int nextInt(int bound) {
+            if (bound <= 256) {
+                int limit = 256 - 256 % bound;
+                int r;
+                do {
+                    r = nextByte();
+                } while (r >= limit);
+                return r % bound;
+            }
+            int limit = Integer.MAX_VALUE - (Integer.MAX_VALUE % bound);
+            int r;
+            do {
+                r = (nextByte() << 23 | nextByte() << 15 | nextByte() << 7 | nextByte() >>> 1);
+            } while (r >= limit);
+            return r % bound;
         }
     }
 
     public String generatePassword(String websiteName, int upperCase, int lowerCase, int numbers, int symbols) {
-        List<Character> passwordChars = new ArrayList<>();
-        
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            String password = newPassword(upperCase, lowerCase, numbers, symbols);
+            failed = false;
+            return password;
+        } finally {
+            metrics.record(VaultMetrics.Operation.GENERATE, start, failed);
+        }
+    }
+
+    // Untimed, for the bulk paths: recording every password would have all workers of a parallel
+    // run update the same histogram bucket, so they record one GENERATE_BULK sample per call instead
+    private String newPassword(int upperCase, int lowerCase, int numbers, int symbols) {
+        checkCounts(upperCase, lowerCase, numbers, symbols);
+        char[] passwordChars = new char[upperCase + lowerCase + numbers + symbols];
+        generatePassword(passwordChars, 0, upperCase, lowerCase, numbers, symbols);
+        return new String(passwordChars);
+    }
+
+    // Writes the password into dest starting at offset and returns the number of chars written.
+    // Nothing is allocated per call, so callers generating in bulk can reuse one buffer.
+    public int generatePassword(char[] dest, int offset, int upperCase, int lowerCase, int numbers, int symbols) {
+        checkCounts(upperCase, lowerCase, numbers, symbols);
+        int length = upperCase + lowerCase + numbers + symbols;
+        if (offset < 0 || offset > dest.length - length) {
+            throw new IndexOutOfBoundsException("Buffer too small for password of length " + length);
+        }
+
+        RandomBuffer random = RANDOM.get();
+        int pos = offset;
+
         // Add uppercase letters
         for (int i = 0; i < upperCase; i++) {
-            passwordChars.add((char) ('A' + new Random().nextInt(26)));
+            dest[pos++] = (char) ('A' + random.nextInt(26));
         }
-        
+
         // Add lowercase letters
         for (int i = 0; i < lowerCase; i++) {
-            passwordChars.add((char) ('a' + new Random().nextInt(26)));
+            dest[pos++] = (char) ('a' + random.nextInt(26));
         }
-        
+
         // Add numbers
         for (int i = 0; i < numbers; i++) {
-            passwordChars.add((char) ('0' + new Random().nextInt(10)));
+            dest[pos++] = (char) ('0' + random.nextInt(10));
         }
-        
+
         // Add symbols
         for (int i = 0; i < symbols; i++) {
-            passwordChars.add(SYMBOLS.charAt(new Random().nextInt(SYMBOLS.length())));
+            dest[pos++] = SYMBOL_CHARS[random.nextInt(SYMBOL_CHARS.length)];
+        }
+
+        // In-place Fisher-Yates shuffle over the written range
+        for (int i = length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            char tmp = dest[offset + i];
+            dest[offset + i] = dest[offset + j];
+            dest[offset + j] = tmp;
+        }
+        return length;
+    }
+
+    // Writes the password at the buffer's current position and advances it.
+    public int generatePassword(CharBuffer dest, int upperCase, int lowerCase, int numbers, int symbols) {
+        checkCounts(upperCase, lowerCase, numbers, symbols);
+        int length = upperCase + lowerCase + numbers + symbols;
+        if (dest.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        if (dest.hasArray()) {
+            int start = dest.arrayOffset() + dest.position();
+            generatePassword(dest.array(), start, upperCase, lowerCase, numbers, symbols);
+            dest.position(dest.position() + length);
+        } else {
+            char[] tmp = new char[length];
+            generatePassword(tmp, 0, upperCase, lowerCase, numbers, symbols);
+            dest.put(tmp);
+            Arrays.fill(tmp, '\0');
+        }
+        return length;
+    }
+
+    public String generatePassword(PasswordSpec spec) {
+        return generatePassword((String) null, spec.upperCase, spec.lowerCase, spec.numbers, spec.symbols);
+    }
+
+    public List<String> generatePasswords(int count, PasswordSpec spec) {
+        return generatePasswords(count, spec, false);
+    }
+
+    public List<String> generatePasswords(int count, PasswordSpec spec, boolean parallel) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<String> passwords = passwordStream(count, spec, parallel).collect(Collectors.toList());
+            failed = false;
+            return passwords;
+        } finally {
+            metrics.record(VaultMetrics.Operation.GENERATE_BULK, start, failed);
+        }
+    }
+
+    // Lazily generates count passwords. A parallel stream runs on the fork-join pool and every
+    // worker draws from its own thread-local SecureRandom. The stream is consumed after this
+    // returns, so it records no metrics of its own.
+    public Stream<String> passwordStream(int count, PasswordSpec spec, boolean parallel) {
+        checkCount(count);
+        IntStream indices = IntStream.range(0, count);
+        if (parallel) {
+            indices = indices.parallel();
+        }
+        return indices.mapToObj(i -> newPassword(spec.upperCase, spec.lowerCase, spec.numbers, spec.symbols));
+    }
+
+    // Hands every password to sink as soon as it is generated. In parallel mode the sink is called
+    // from several threads at once and must be thread-safe.
+    public void generatePasswords(int count, PasswordSpec spec, Consumer<? super String> sink, boolean parallel) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            passwordStream(count, spec, parallel).forEach(sink);
+            failed = false;
+        } finally {
+            metrics.record(VaultMetrics.Operation.GENERATE_BULK, start, failed);
+        }
+    }
+
+    // Writes count passwords to out, one per line, and returns the number written. Passwords are
+    // generated into a fixed set of reusable blocks that are written in order, so memory stays
+    // constant however large count is. The writer is not closed or flushed.
+    public long generatePasswords(int count, PasswordSpec spec, Writer out, boolean parallel) throws IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            long written = writePasswords(count, spec, out, parallel);
+            failed = false;
+            return written;
+        } finally {
+            metrics.record(VaultMetrics.Operation.GENERATE_BULK, start, failed);
+        }
+    }
+
+    private long writePasswords(int count, PasswordSpec spec, Writer out, boolean parallel) throws IOException {
+        checkCount(count);
+        int lineLength = spec.length() + 1;
+        int perChunk = Math.max(1, BULK_CHUNK_CHARS / lineLength);
+        int chunks = (int) (((long) count + perChunk - 1) / perChunk);
+        int window = parallel ? Math.max(1, ForkJoinPool.getCommonPoolParallelism() * 2) : 1;
+        char[][] blocks = new char[Math.min(window, Math.max(chunks, 1))][perChunk * lineLength];
+
+        for (int first = 0; first < chunks; first += blocks.length) {
+            int base = first;
+            int inWindow = Math.min(blocks.length, chunks - first);
+            IntStream batch = IntStream.range(0, inWindow);
+            if (parallel && inWindow > 1) {
+                batch = batch.parallel();
+            }
+            batch.forEach(b -> fillBlock(blocks[b], passwordsInChunk(base + b, perChunk, count), lineLength, spec));
+
+            for (int b = 0; b < inWindow; b++) {
+                out.write(blocks[b], 0, passwordsInChunk(base + b, perChunk, count) * lineLength);
+            }
+        }
+        for (char[] block : blocks) {
+            Arrays.fill(block, '\0');
+        }
+        return count;
+    }
+
+    private static int passwordsInChunk(int chunk, int perChunk, int count) {
+        return (int) Math.min(perChunk, (long) count - (long) chunk * perChunk);
+    }
+
+    private void fillBlock(char[] block, int passwords, int lineLength, PasswordSpec spec) {
+        for (int i = 0; i < passwords; i++) {
+            int offset = i * lineLength;
+            generatePassword(block, offset, spec.upperCase, spec.lowerCase, spec.numbers, spec.symbols);
+            block[offset + lineLength - 1] = '\n';
+        }
+    }
+
+    private static void checkCounts(int upperCase, int lowerCase, int numbers, int symbols) {
+        if (upperCase < 0 || lowerCase < 0 || numbers < 0 || symbols < 0) {
+            throw new IllegalArgumentException("Character counts must not be negative");
+        }
+    }
+
+    private static void checkCount(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Password count must not be negative");
         }
-        
-        Collections.shuffle(passwordChars);
-        return passwordChars.stream()
-                .map(String::valueOf)
-                .collect(Collectors.joining());
     }
 
     public void createNewFile(String filename) throws IOException {
         try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            writer.println("website,link,username,password,length,date/time");
+            writer.println(VaultCsv.HEADER);
         }
     }
 
-    public void appendToFile(String filename, String appName, String link, String username, String password) throws SQLException {
-        String sql = "INSERT INTO passwords (website, link, username, password, length, datetime) VALUES (?, ?, ?, ?, ?, ?)";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, appName.replace(",", ""));
-            pstmt.setString(2, link.replace(",", ""));
-            pstmt.setString(3, username.replace(",", ""));
-            pstmt.setString(4, password);
-            pstmt.setInt(5, password.length());
-            pstmt.setString(6, LocalDateTime.now().format(DATE_FORMATTER));
-            pstmt.executeUpdate();
+    // Returns the id of the new entry
+    public long appendToFile(String filename, String appName, String link, String username, String password) throws SQLException {
+        return addEntry(appName, link, username, password).getId();
+    }
+
+    // As appendToFile, but returns the entry as stored: with its id, and with commas stripped from
+    // the website, link and username
+    public EntryMetadata addEntry(String appName, String link, String username, String password) throws SQLException {
+        return timed(VaultMetrics.Operation.INSERT, () -> {
+            long createdAt = System.currentTimeMillis();
+            return write(db -> {
+                PreparedStatement pstmt = db.prepare(INSERT_SQL);
+                bindInsert(pstmt, appName, link, username, password, createdAt);
+                pstmt.executeUpdate();
+                long id;
+                try (ResultSet rs = db.prepare("SELECT last_insert_rowid()").executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("No row id for the new entry");
+                    }
+                    id = rs.getLong(1);
+                }
+                EntryMetadata stored = new EntryMetadata(
+                    id, stripCommas(appName), stripCommas(link), stripCommas(username), password.length(), createdAt);
+                fireChange(db, ChangeEvent.Type.INSERTED, Collections.singletonList(stored));
+                return stored;
+            });
+        });
+    }
+
+    // Inserts all entries with JDBC batching, committing every batchCommitInterval rows instead of
+    // once per row. Entries without a creation time are stamped with the current time. If a row fails,
+    // the open transaction is rolled back but earlier commit intervals stay written.
+    // Listeners get a single INVALIDATED event afterwards rather than one event per row.
+    public int appendAll(Iterable<PasswordEntry> entries) throws SQLException {
+        return timed(VaultMetrics.Operation.INSERT, () -> {
+            // The write connection is held for the whole import, so other writers wait for it
+            return write(db -> {
+                try {
+                    return insertAll(db, entries);
+                } finally {
+                    // Also after a failure, since earlier commit intervals are already in the vault
+                    fireChange(db, ChangeEvent.Type.INVALIDATED, Collections.emptyList());
+                }
+            });
+        });
+    }
+
+    private int insertAll(ConnectionPool.PooledConnection db, Iterable<PasswordEntry> entries) throws SQLException {
+        Connection connection = db.connection();
+        connection.setAutoCommit(false);
+        int written = 0;
+        PreparedStatement pstmt = db.prepare(INSERT_SQL);
+        try {
+            long now = System.currentTimeMillis();
+            int commitInterval = batchCommitInterval;
+            int uncommitted = 0;
+            for (PasswordEntry entry : entries) {
+                long createdAt = entry.getCreatedAt() > 0 ? entry.getCreatedAt() : now;
+                bindInsert(pstmt, entry.getAppName(), entry.getLink(), entry.getUsername(), entry.getPassword(), createdAt);
+                pstmt.addBatch();
+                written++;
+                uncommitted++;
+
+                if (uncommitted >= commitInterval) {
+                    pstmt.executeBatch();
+                    connection.commit();
+                    metrics.rowsInserted(uncommitted);
+                    uncommitted = 0;
+                } else if (uncommitted % INSERT_BATCH_SIZE == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+            connection.commit();
+            metrics.rowsInserted(uncommitted);
+            return written;
+        } catch (SQLException | RuntimeException e) {
+            pstmt.clearBatch();
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    public int appendAll(Stream<PasswordEntry> entries) throws SQLException {
+        return appendAll((Iterable<PasswordEntry>) entries::iterator);
+    }
+
+    // Writes the whole vault to file as CSV, newest first, holding one page of entries at a time.
+    // Passwords are written in plaintext, so an encrypted vault must be unlocked. The file is
+    // replaced only once the export is complete; entries saved while it runs may be missed.
+    public TransferStats exportCsv(Path file) throws SQLException, IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try (Stream<PasswordEntry> entries = streamEntries(EXPORT_PAGE_SIZE)) {
+            long rows = VaultCsv.write(file, entries.iterator());
+            failed = false;
+            return new TransferStats(rows, System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw e;
+        } finally {
+            metrics.record(VaultMetrics.Operation.TRANSFER, start, failed);
+        }
+    }
+
+    // Adds the entries of a CSV file in the export format, parsing records as they are inserted so
+    // that only one is held at a time. Rows go through appendAll: a malformed record stops the
+    // import, and the commit intervals before it stay in the vault.
+    public TransferStats importCsv(Path file) throws SQLException, IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try (VaultCsv.Records records = VaultCsv.read(file)) {
+            int rows = appendAll(records);
+            failed = false;
+            return new TransferStats(rows, System.nanoTime() - start);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            metrics.record(VaultMetrics.Operation.TRANSFER, start, failed);
+        }
+    }
+
+    // Writes a snapshot of the whole vault as a MappedVault file, replacing any earlier snapshot
+    // atomically. Entries are streamed page by page as for exportCsv. An encrypted vault keeps its
+    // passwords sealed in the snapshot; it needs to be unlocked only while some entries are still
+    // stored in plain text.
+    public TransferStats exportMapped(Path file) throws SQLException, IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try (Stream<PasswordEntry> entries = streamEntries(EXPORT_PAGE_SIZE)) {
+            byte[] keyCheck = encrypted ? (byte[]) read(PasswordManager::readVaultMeta).get("key_check") : null;
+            int rows = MappedVault.write(file, entries.iterator(), keyCheck, cipher);
+            failed = false;
+            return new TransferStats(rows, System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw e;
+        } finally {
+            metrics.record(VaultMetrics.Operation.TRANSFER, start, failed);
         }
     }
 
+    // Opens a snapshot written by exportMapped; the sealed passwords of an encrypted vault's
+    // snapshot can be read once this vault is unlocked
+    public MappedVault openMapped(Path file) throws IOException {
+        return MappedVault.open(file, cipher);
+    }
+
+    public void setBatchCommitInterval(int rows) {
+        if (rows < 1) {
+            throw new IllegalArgumentException("Commit interval must be at least one row");
+        }
+        this.batchCommitInterval = rows;
+    }
+
+    public int getBatchCommitInterval() {
+        return batchCommitInterval;
+    }
+
+    // WAL lets readers run alongside a writer and turns most commits into sequential appends
+    // Leaving WAL while the pool has read connections open can fail with a busy error.
+    public void setJournalMode(JournalMode mode) throws SQLException {
+        write(db -> {
+            try (Statement stmt = db.connection().createStatement()) {
+                return stmt.execute("PRAGMA journal_mode=" + mode.name());
+            }
+        });
+    }
+
+    // NORMAL is durable in WAL mode except for the last commits before a power loss, and skips
+    // the fsync that FULL performs on every commit
+    // The setting belongs to the write connection, the only one that commits.
+    public void setSynchronous(SynchronousMode mode) throws SQLException {
+        write(db -> {
+            try (Statement stmt = db.connection().createStatement()) {
+                return stmt.execute("PRAGMA synchronous=" + mode.name());
+            }
+        });
+    }
+
+    private void bindInsert(PreparedStatement pstmt, String appName, String link, String username,
+                                   String password, long createdAt) throws SQLException {
+        String website = stripCommas(appName);
+        String user = stripCommas(username);
+        pstmt.setString(1, website);
+        pstmt.setString(2, stripCommas(link));
+        pstmt.setString(3, user);
+        bindSecret(pstmt, 4, password);
+        pstmt.setInt(5, password.length());
+        pstmt.setLong(6, createdAt);
+        pstmt.setString(7, normalize(website));
+        pstmt.setString(8, normalize(user));
+    }
+
+    // Sealed once the vault has a master password, plaintext before that
+    private void bindSecret(PreparedStatement pstmt, int index, String password) throws SQLException {
+        VaultCipher current = cipher;
+        if (current != null) {
+            pstmt.setBytes(index, current.seal(password));
+        } else if (encrypted) {
+            throw new IllegalStateException("The vault is locked");
+        } else {
+            pstmt.setString(index, password);
+        }
+    }
+
+    // Opens a password column value, which is a sealed BLOB or, in vaults not yet encrypted, text
+    private String openSecret(Object stored) {
+        if (!(stored instanceof byte[])) {
+            return (String) stored;
+        }
+        VaultCipher current = cipher;
+        if (current == null) {
+            throw new IllegalStateException("The vault is locked");
+        }
+        return current.open((byte[]) stored);
+    }
+
+    private static String stripCommas(String value) {
+        return value == null ? null : value.replace(",", "");
+    }
+
+    // Loads the whole vault at once. Prefer readPage or streamEntries for anything user-facing.
     public List<PasswordEntry> readFile(String filename) throws SQLException {
-        List<PasswordEntry> entries = new ArrayList<>();
-        String sql = "SELECT * FROM passwords ORDER BY datetime DESC";
+        return timed(VaultMetrics.Operation.READ, () -> {
+            String sql = "SELECT * FROM passwords ORDER BY created_at DESC, id DESC";
         
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            while (rs.next()) {
-                entries.add(new PasswordEntry(
-                    rs.getString("website"),
-                    rs.getString("link"),
-                    rs.getString("username"),
-                    rs.getString("password"),
-                    rs.getInt("length"),
-                    rs.getString("datetime")
-                ));
+            return read(db -> {
+                List<PasswordEntry> entries = new ArrayList<>();
+                try (ResultSet rs = db.prepare(sql).executeQuery()) {
+                    while (rs.next()) {
+                        entries.add(mapEntry(rs));
+                    }
+                }
+                return entries;
+            });
+        });
+    }
+
+    // Returns up to pageSize entries, newest first, that come after the given key; pass null for
+    // the first page. Keyset pagination walks the (created_at, id) index, so every page costs the
+    // same no matter how deep into the vault it is.
+    public Page<PasswordEntry> readPage(int pageSize, PageKey after) throws SQLException {
+        return readPage("*", this::mapEntry, pageSize, after);
+    }
+
+    // readPage without the passwords, for listings
+    public Page<EntryMetadata> readMetadataPage(int pageSize, PageKey after) throws SQLException {
+        return readPage(METADATA_COLUMNS, this::mapMetadata, pageSize, after);
+    }
+
+    private <T extends EntryMetadata> Page<T> readPage(String columns, RowMapper<T> mapper, int pageSize, PageKey after) throws SQLException {
+        return timed(VaultMetrics.Operation.READ, () -> {
+            if (pageSize < 1) {
+                throw new IllegalArgumentException("Page size must be at least one");
+            }
+            String firstSql = "SELECT " + columns + " FROM passwords ORDER BY created_at DESC, id DESC LIMIT ?";
+            String nextSql = "SELECT " + columns + " FROM passwords WHERE (created_at, id) < (?, ?) ORDER BY created_at DESC, id DESC LIMIT ?";
+
+            return read(db -> {
+                PreparedStatement pstmt;
+                if (after == null) {
+                    pstmt = db.prepare(firstSql);
+                    pstmt.setInt(1, pageSize + 1);
+                } else {
+                    pstmt = db.prepare(nextSql);
+                    pstmt.setLong(1, after.createdAt);
+                    pstmt.setLong(2, after.id);
+                    pstmt.setInt(3, pageSize + 1);
+                }
+
+                // One extra row tells whether another page follows
+                List<T> entries = new ArrayList<>(Math.min(pageSize, 1_024));
+                PageKey lastKey = null;
+                boolean more = false;
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        if (entries.size() == pageSize) {
+                            more = true;
+                            break;
+                        }
+                        T entry = mapper.map(rs);
+                        entries.add(entry);
+                        lastKey = new PageKey(entry.getCreatedAt(), entry.getId());
+                    }
+                }
+                return new Page<>(entries, more ? lastKey : null);
+            });
+        });
+    }
+
+    // Lazily yields the whole vault newest first, holding at most one page in memory. Each page is
+    // fetched on its own read connection when the previous one is used up. Database errors
+    // surface as unchecked exceptions wrapping the SQLException.
+    public Stream<PasswordEntry> streamEntries(int pageSize) {
+        Iterator<PasswordEntry> iterator = new Iterator<PasswordEntry>() {
+            private Iterator<PasswordEntry> current = Collections.emptyIterator();
+            private PageKey nextKey;
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && !exhausted) {
+                    Page<PasswordEntry> page;
+                    try {
+                        page = readPage(pageSize, nextKey);
+                    } catch (SQLException e) {
+                        throw new RuntimeException("Failed to read password page", e);
+                    }
+                    current = page.getEntries().iterator();
+                    nextKey = page.getNextKey();
+                    exhausted = !page.hasMore();
+                }
+                return current.hasNext();
             }
+
+            @Override
+            public PasswordEntry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    // Sealed secrets are left sealed; see PasswordEntry.getPassword
+    private PasswordEntry mapEntry(ResultSet rs) throws SQLException {
+        metrics.rowsReturned(1);
+        Object secret = rs.getObject("password");
+        if (secret instanceof byte[]) {
+            return new PasswordEntry(
+                rs.getLong("id"),
+                rs.getString("website"),
+                rs.getString("link"),
+                rs.getString("username"),
+                (byte[]) secret,
+                currentCipher,
+                rs.getInt("length"),
+                rs.getLong("created_at")
+            );
         }
-        return entries;
+        return new PasswordEntry(
+            rs.getLong("id"),
+            rs.getString("website"),
+            rs.getString("link"),
+            rs.getString("username"),
+            (String) secret,
+            rs.getInt("length"),
+            rs.getLong("created_at")
+        );
     }
 
-    public void removePassword(String filename, String passwordToRemove) throws SQLException {
-        String sql = "DELETE FROM passwords WHERE password = ?";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, passwordToRemove);
-            pstmt.executeUpdate();
+    private EntryMetadata mapMetadata(ResultSet rs) throws SQLException {
+        metrics.rowsReturned(1);
+        return new EntryMetadata(
+            rs.getLong("id"),
+            rs.getString("website"),
+            rs.getString("link"),
+            rs.getString("username"),
+            rs.getInt("length"),
+            rs.getLong("created_at")
+        );
+    }
+
+    public int countEntries() throws SQLException {
+        return timed(VaultMetrics.Operation.READ, () -> {
+            String sql = "SELECT COUNT(*) FROM passwords";
+
+            return read(db -> {
+                try (ResultSet rs = db.prepare(sql).executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            });
+        });
+    }
+
+    // Up to limit entries, without passwords, starting at row offset of the newest-first listing.
+    // For views that jump to arbitrary rows, such as a scrolled table; sequential readers should
+    // use readMetadataPage, since the (created_at, id) index still has to be stepped through up to
+    // offset.
+    public List<EntryMetadata> readMetadataAt(int offset, int limit) throws SQLException {
+        return timed(VaultMetrics.Operation.READ, () -> {
+            String sql = "SELECT " + METADATA_COLUMNS + " FROM passwords ORDER BY created_at DESC, id DESC LIMIT ? OFFSET ?";
+
+            return read(db -> {
+                PreparedStatement pstmt = db.prepare(sql);
+                pstmt.setInt(1, limit);
+                pstmt.setInt(2, offset);
+                List<EntryMetadata> entries = new ArrayList<>(limit);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        entries.add(mapMetadata(rs));
+                    }
+                }
+                return entries;
+            });
+        });
+    }
+
+    // The password of the entry with this id, or null if there is no such entry. A primary-key
+    // lookup, meant to run only when the user copies or reveals that one password.
+    public String readSecret(long id) throws SQLException {
+        return timed(VaultMetrics.Operation.READ, () -> {
+            String sql = "SELECT password FROM passwords WHERE id = ?";
+
+            return read(db -> {
+                PreparedStatement pstmt = db.prepare(sql);
+                pstmt.setLong(1, id);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? openSecret(rs.getObject(1)) : null;
+                }
+            });
+        });
+    }
+
+    // Entries created in [fromMillis, toMillis), newest first, answered from the created_at index
+    public List<PasswordEntry> readCreatedBetween(long fromMillis, long toMillis, int limit) throws SQLException {
+        return timed(VaultMetrics.Operation.READ, () -> {
+            String sql = "SELECT * FROM passwords WHERE created_at >= ? AND created_at < ? ORDER BY created_at DESC, id DESC LIMIT ?";
+
+            return read(db -> {
+                PreparedStatement pstmt = db.prepare(sql);
+                pstmt.setLong(1, fromMillis);
+                pstmt.setLong(2, toMillis);
+                pstmt.setInt(3, limit);
+                List<PasswordEntry> entries = new ArrayList<>();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        entries.add(mapEntry(rs));
+                    }
+                }
+                return entries;
+            });
+        });
+    }
+
+    public static String formatDateTime(long epochMillis) {
+        if (epochMillis <= 0) {
+            return "";
         }
+        return DATE_FORMATTER.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()));
     }
 
+    private static long parseDateTime(String dateTime) {
+        if (dateTime == null || dateTime.isEmpty()) {
+            return 0;
+        }
+        return LocalDateTime.parse(dateTime, DATE_FORMATTER).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // Deletes every entry that happens to have this password, which may include unrelated ones,
+    // and has to scan the table to find them. Returns how many were deleted. Kept for old callers;
+    // use deleteById instead.
+    @Deprecated
+    public int removePassword(String filename, String passwordToRemove) throws SQLException {
+        return timed(VaultMetrics.Operation.REMOVE, () -> {
+            // Checked up front rather than failing on the first sealed row of the scan
+            if (isEncrypted() && !isUnlocked()) {
+                throw new IllegalStateException("The vault is locked; unlock it to remove entries by password");
+            }
+            String sql = "SELECT id, password FROM passwords";
+
+            return write(db -> {
+                // Sealed secrets use a fresh IV each, so they can only be compared once opened
+                List<Long> ids = new ArrayList<>();
+                try (ResultSet rs = db.prepare(sql).executeQuery()) {
+                    while (rs.next()) {
+                        if (passwordToRemove.equals(openSecret(rs.getObject(2)))) {
+                            ids.add(rs.getLong(1));
+                        }
+                    }
+                }
+                return deleteIds(db, ids).size();
+            });
+        });
+    }
+
+    // Empties the vault and returns how many entries it held. Listeners get INVALIDATED rather
+    // than every removed row.
+    public int deleteAll() throws SQLException {
+        return timed(VaultMetrics.Operation.REMOVE, () -> {
+            return write(db -> {
+                int removed;
+                try (Statement stmt = db.connection().createStatement()) {
+                    removed = stmt.executeUpdate("DELETE FROM passwords");
+                }
+                metrics.rowsDeleted(removed);
+                fireChange(db, ChangeEvent.Type.INVALIDATED, Collections.emptyList());
+                return removed;
+            });
+        });
+    }
+
+    // Returns one entry whose website or username contains searchTerm, ignoring case. Exact
+    // matches are preferred over prefix matches, and prefix matches over other substrings; each
+    // step is an index lookup.
+    // Answers, including misses, are cached per term until a write could change them.
     public PasswordEntry findPassword(String filename, String searchTerm) throws SQLException {
-        String sql = "SELECT * FROM passwords WHERE LOWER(website) LIKE ? OR LOWER(username) LIKE ? LIMIT 1";
-        String searchPattern = "%" + searchTerm.toLowerCase() + "%";
+        return timed(VaultMetrics.Operation.FIND, () -> {
+            String term = normalize(searchTerm);
+            EntryCache cache = lookupCache;
+            if (cache == null) {
+                return lookUp(term);
+            }
+            PasswordEntry cached = cache.get(term);
+            if (cached != null) {
+                return cached == EntryCache.NOT_FOUND ? null : cached;
+            }
+            long version = cache.version();
+            PasswordEntry entry = lookUp(term);
+            cache.put(term, entry, version);
+            return entry;
+        });
+    }
+
+    private PasswordEntry lookUp(String term) throws SQLException {
+        String exactSql = "SELECT * FROM passwords WHERE website_lc = ? OR username_lc = ? LIMIT 1";
+        String prefixSql = "SELECT * FROM passwords WHERE website_lc GLOB ? OR username_lc GLOB ? LIMIT 1";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, searchPattern);
-            pstmt.setString(2, searchPattern);
-            
+        return read(db -> {
+            PasswordEntry entry = findFirst(db, exactSql, term, term);
+            if (entry == null) {
+                String prefix = escapeGlob(term) + "*";
+                entry = findFirst(db, prefixSql, prefix, prefix);
+            }
+            if (entry == null) {
+                entry = findFirst(db, "SELECT * FROM passwords WHERE " + substringCondition(term) + " LIMIT 1",
+                                  substringArgs(term));
+            }
+            return entry;
+        });
+    }
+
+    // Entries whose website or username contains searchTerm, ignoring case: exact matches first,
+    // then prefix matches, then other substrings, newest first within each group. Returns at most
+    // limit entries after skipping offset of them. One statement does the matching and the ranking;
+    // the trigram index narrows the candidates for terms of three or more characters.
+    public List<PasswordEntry> search(String searchTerm, int limit, int offset) throws SQLException {
+        return search("*", this::mapEntry, searchTerm, limit, offset);
+    }
+
+    // search without the passwords, for result lists
+    public List<EntryMetadata> searchMetadata(String searchTerm, int limit, int offset) throws SQLException {
+        return search(METADATA_COLUMNS, this::mapMetadata, searchTerm, limit, offset);
+    }
+
+    private <T> List<T> search(String columns, RowMapper<T> mapper, String searchTerm, int limit, int offset) throws SQLException {
+        return timed(VaultMetrics.Operation.SEARCH, () -> {
+            if (limit < 1 || offset < 0) {
+                throw new IllegalArgumentException("Limit must be positive and offset not negative");
+            }
+            String term = normalize(searchTerm);
+            String sql = "SELECT " + columns + " FROM passwords WHERE " + substringCondition(term) +
+                         " ORDER BY CASE WHEN website_lc = ? OR username_lc = ? THEN 0" +
+                         " WHEN website_lc GLOB ? OR username_lc GLOB ? THEN 1 ELSE 2 END," +
+                         " created_at DESC, id DESC LIMIT ? OFFSET ?";
+            String prefix = escapeGlob(term) + "*";
+
+            return read(db -> {
+                PreparedStatement pstmt = db.prepare(sql);
+                String[] filterArgs = substringArgs(term);
+                bindAll(pstmt, filterArgs);
+                int index = filterArgs.length;
+                pstmt.setString(++index, term);
+                pstmt.setString(++index, term);
+                pstmt.setString(++index, prefix);
+                pstmt.setString(++index, prefix);
+                pstmt.setInt(++index, limit);
+                pstmt.setInt(++index, offset);
+                List<T> entries = new ArrayList<>(Math.min(limit, 1_024));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        entries.add(mapper.map(rs));
+                    }
+                }
+                return entries;
+            });
+        });
+    }
+
+    // Deletes every entry whose website or username contains identifier. previewRemoveByIdentifier
+    // shows which ones that is; deleting the previewed ids removes exactly those and no entry
+    // added in the meantime.
+    public boolean removePasswordByIdentifier(String filename, String identifier) throws SQLException {
+        return timed(VaultMetrics.Operation.REMOVE, () -> {
+            String term = normalize(identifier);
+            String where = substringCondition(term);
+        
+            List<EntryMetadata> removed = write(db -> deleteWhere(db, where, substringArgs(term)));
+            return !removed.isEmpty();
+        });
+    }
+
+    // The entries removePasswordByIdentifier would delete right now, newest first, without deleting
+    public List<EntryMetadata> previewRemoveByIdentifier(String identifier) throws SQLException {
+        return timed(VaultMetrics.Operation.SEARCH, () -> {
+            String term = normalize(identifier);
+            String sql = "SELECT " + METADATA_COLUMNS + " FROM passwords WHERE " + substringCondition(term) +
+                         " ORDER BY created_at DESC, id DESC";
+
+            return read(db -> {
+                PreparedStatement pstmt = db.prepare(sql);
+                bindAll(pstmt, substringArgs(term));
+                List<EntryMetadata> entries = new ArrayList<>();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        entries.add(mapMetadata(rs));
+                    }
+                }
+                return entries;
+            });
+        });
+    }
+
+    public boolean deleteById(long id) throws SQLException {
+        return deleteByIds(Collections.singletonList(id)) > 0;
+    }
+
+    // Deletes the entries with these ids in one transaction, each through a primary-key lookup,
+    // and returns how many existed. Unknown ids are ignored.
+    public int deleteByIds(Collection<Long> ids) throws SQLException {
+        return deleteEntries(ids).size();
+    }
+
+    // As deleteByIds, but returns the entries that were removed, without their passwords
+    public List<EntryMetadata> deleteEntries(Collection<Long> ids) throws SQLException {
+        return timed(VaultMetrics.Operation.REMOVE, () -> {
+            if (ids.isEmpty()) {
+                return Collections.<EntryMetadata>emptyList();
+            }
+            return write(db -> deleteIds(db, ids));
+        });
+    }
+
+    private List<EntryMetadata> deleteIds(ConnectionPool.PooledConnection db, Collection<Long> ids) throws SQLException {
+        String selectSql = "SELECT " + METADATA_COLUMNS + " FROM passwords WHERE id = ?";
+        String deleteSql = "DELETE FROM passwords WHERE id = ?";
+
+        Connection connection = db.connection();
+        connection.setAutoCommit(false);
+        PreparedStatement delete = db.prepare(deleteSql);
+        List<EntryMetadata> found = new ArrayList<>(ids.size());
+        try {
+            PreparedStatement select = db.prepare(selectSql);
+            for (long id : new LinkedHashSet<>(ids)) {
+                select.setLong(1, id);
+                try (ResultSet rs = select.executeQuery()) {
+                    if (!rs.next()) {
+                        continue;
+                    }
+                    found.add(mapMetadata(rs));
+                }
+                delete.setLong(1, id);
+                delete.addBatch();
+                if (found.size() % INSERT_BATCH_SIZE == 0) {
+                    delete.executeBatch();
+                }
+            }
+            delete.executeBatch();
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            delete.clearBatch();
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        fireChange(db, ChangeEvent.Type.DELETED, found);
+        return found;
+    }
+
+    // Deletes the rows matching where and returns them, so listeners learn exactly what went away.
+    // Both statements run in one transaction on the write connection, so no row can slip in between.
+    private List<EntryMetadata> deleteWhere(ConnectionPool.PooledConnection db, String where, String... args) throws SQLException {
+        Connection connection = db.connection();
+        connection.setAutoCommit(false);
+        List<EntryMetadata> removed = new ArrayList<>();
+        try {
+            PreparedStatement select = db.prepare("SELECT " + METADATA_COLUMNS + " FROM passwords WHERE " + where);
+            bindAll(select, args);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    removed.add(mapMetadata(rs));
+                }
+            }
+            if (!removed.isEmpty()) {
+                PreparedStatement delete = db.prepare("DELETE FROM passwords WHERE " + where);
+                bindAll(delete, args);
+                delete.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        fireChange(db, ChangeEvent.Type.DELETED, removed);
+        return removed;
+    }
+
+    // Loads every website and username into the in-memory search index. Runs on the write
+    // connection so that no write can land between the load and the index going live; later writes
+    // keep the index current. quickSearch calls this on first use if it has not run yet.
+    public void buildSearchIndex() throws SQLException {
+        write(db -> {
+            if (searchIndex == null) {
+                TrigramIndex index = new TrigramIndex();
+                fillSearchIndex(db, index);
+                searchIndex = index;
+            }
+            return null;
+        });
+    }
+
+    private static void fillSearchIndex(ConnectionPool.PooledConnection db, TrigramIndex index) throws SQLException {
+        index.clear();
+        String sql = "SELECT id, created_at, website_lc, username_lc FROM passwords ORDER BY created_at, id";
+        try (ResultSet rs = db.prepare(sql).executeQuery()) {
+            while (rs.next()) {
+                index.put(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getString(4));
+            }
+        }
+    }
+
+    // The best limit entries whose website or username contains searchTerm, ranked exact, then
+    // prefix, then substring, newest first within each group. Matching runs in memory, so it is
+    // cheap enough to call on every keystroke; only the matched rows are read from the database,
+    // and without their passwords.
+    public List<EntryMetadata> quickSearch(String searchTerm, int limit) throws SQLException {
+        return timed(VaultMetrics.Operation.FIND, () -> {
+            if (searchIndex == null) {
+                buildSearchIndex();
+            }
+            return readByIds(searchIndex.search(searchTerm, limit));
+        });
+    }
+
+    // Entries with the given ids, in the same order; ids no longer in the vault are skipped
+    private List<EntryMetadata> readByIds(List<Long> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String sql = "SELECT " + METADATA_COLUMNS + " FROM passwords WHERE id IN (" +
+                     String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+
+        Map<Long, EntryMetadata> byId = read(db -> {
+            PreparedStatement pstmt = db.prepare(sql);
+            for (int i = 0; i < ids.size(); i++) {
+                pstmt.setLong(i + 1, ids.get(i));
+            }
+            Map<Long, EntryMetadata> found = new HashMap<>();
             try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return new PasswordEntry(
-                        rs.getString("website"),
-                        rs.getString("link"),
-                        rs.getString("username"),
-                        rs.getString("password"),
-                        rs.getInt("length"),
-                        rs.getString("datetime")
-                    );
+                while (rs.next()) {
+                    EntryMetadata entry = mapMetadata(rs);
+                    found.put(entry.getId(), entry);
                 }
             }
+            return found;
+        });
+        List<EntryMetadata> entries = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            EntryMetadata entry = byId.get(id);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private PasswordEntry findFirst(ConnectionPool.PooledConnection db, String sql, String... args) throws SQLException {
+        PreparedStatement pstmt = db.prepare(sql);
+        bindAll(pstmt, args);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (rs.next()) {
+                return mapEntry(rs);
+            }
         }
         return null;
     }
 
-    public boolean removePasswordByIdentifier(String filename, String identifier) throws SQLException {
-        String sql = "DELETE FROM passwords WHERE LOWER(website) LIKE ? OR LOWER(username) LIKE ?";
-        String searchPattern = "%" + identifier.toLowerCase() + "%";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, searchPattern);
-            pstmt.setString(2, searchPattern);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+    // WHERE condition matching rows whose website or username contains the normalized term. Terms
+    // long enough for the trigram index go through FTS; shorter ones fall back to a GLOB scan
+    // over the normalized columns.
+    private static String substringCondition(String term) {
+        if (term.length() >= MIN_FTS_TERM_LENGTH) {
+            return "id IN (SELECT rowid FROM passwords_fts WHERE passwords_fts MATCH ?)";
+        }
+        return "(website_lc GLOB ? OR username_lc GLOB ?)";
+    }
+
+    private static String[] substringArgs(String term) {
+        if (term.length() >= MIN_FTS_TERM_LENGTH) {
+            return new String[] { "\"" + term.replace("\"", "\"\"") + "\"" };
+        }
+        String pattern = "*" + escapeGlob(term) + "*";
+        return new String[] { pattern, pattern };
+    }
+
+    private static String escapeGlob(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '*' || c == '?' || c == '[') {
+                sb.append('[').append(c).append(']');
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void bindAll(PreparedStatement pstmt, String... args) throws SQLException {
+        for (int i = 0; i < args.length; i++) {
+            pstmt.setString(i + 1, args[i]);
+        }
+    }
+
+    // Derives the vault key from masterPassword, which is cleared afterwards, and keeps it for the
+    // rest of the session. The first unlock of a vault chooses its master password. Returns false,
+    // leaving the vault locked, if masterPassword is wrong. Entries stored before the vault was
+    // encrypted stay readable as they are until encryptExistingEntries seals them.
+    public boolean unlock(char[] masterPassword) throws SQLException {
+        return timed(VaultMetrics.Operation.UNLOCK, () -> {
+            Map<String, Object> meta = read(PasswordManager::readVaultMeta);
+            if (!meta.containsKey("key_check")) {
+                // Derived before taking the write connection, so that saves are not held up for it.
+                // The copy is cleared by derive; masterPassword is kept in case another unlock wins.
+                byte[] salt = VaultCipher.newSalt();
+                VaultCipher created = VaultCipher.derive(masterPassword.clone(), salt, VaultCipher.DEFAULT_ITERATIONS);
+                if (write(db -> storeVaultKey(db, salt, created))) {
+                    Arrays.fill(masterPassword, '\0');
+                    return true;
+                }
+                // Another unlock chose the master password in the meantime
+                meta = read(PasswordManager::readVaultMeta);
+            }
+            // Slow on purpose, so it runs without holding any connection
+            VaultCipher derived = VaultCipher.derive(masterPassword, (byte[]) meta.get("kdf_salt"),
+                                                     ((Number) meta.get("kdf_iterations")).intValue());
+            if (!derived.verifies((byte[]) meta.get("key_check"))) {
+                return false;
+            }
+            cipher = derived;
+            return true;
+        });
+    }
+
+    // Stores what later unlocks need to re-derive and check a key made under salt, and makes it the
+    // session key. Returns false if the vault got a key since it was last read.
+    private boolean storeVaultKey(ConnectionPool.PooledConnection db, byte[] salt, VaultCipher created) throws SQLException {
+        if (readVaultMeta(db).containsKey("key_check")) {
+            return false;
         }
+        Connection connection = db.connection();
+        connection.setAutoCommit(false);
+        try {
+            PreparedStatement insert = db.prepare("INSERT INTO vault_meta (name, value) VALUES (?, ?)");
+            insert.setString(1, "kdf_salt");
+            insert.setBytes(2, salt);
+            insert.addBatch();
+            insert.setString(1, "kdf_iterations");
+            insert.setInt(2, VaultCipher.DEFAULT_ITERATIONS);
+            insert.addBatch();
+            insert.setString(1, "key_check");
+            insert.setBytes(2, created.keyCheck());
+            insert.addBatch();
+            insert.executeBatch();
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        cipher = created;
+        encrypted = true;
+        return true;
+    }
+
+    // Whether the vault has a master password; secrets written from then on are sealed
+    public boolean isEncrypted() {
+        return encrypted;
+    }
+
+    public boolean isUnlocked() {
+        return cipher != null;
+    }
+
+    // Seals the secrets stored before the vault had a master password and returns how many there
+    // were. Rows are taken in id order, batchCommitInterval per transaction, and the write
+    // connection is released between transactions so that saves are not held up by a large vault.
+    public int encryptExistingEntries() throws SQLException {
+        VaultCipher current = cipher;
+        if (current == null) {
+            throw new IllegalStateException("The vault is locked");
+        }
+        String selectSql = "SELECT id, password FROM passwords WHERE id > ? AND typeof(password) = 'text' ORDER BY id LIMIT ?";
+        String updateSql = "UPDATE passwords SET password = ? WHERE id = ?";
+
+        long[] lastId = {0};
+        int total = 0;
+        int sealed;
+        do {
+            sealed = write(db -> {
+                Connection connection = db.connection();
+                connection.setAutoCommit(false);
+                PreparedStatement update = db.prepare(updateSql);
+                try {
+                    PreparedStatement select = db.prepare(selectSql);
+                    select.setLong(1, lastId[0]);
+                    select.setInt(2, batchCommitInterval);
+                    int rows = 0;
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            lastId[0] = rs.getLong(1);
+                            update.setBytes(1, current.seal(rs.getString(2)));
+                            update.setLong(2, lastId[0]);
+                            update.addBatch();
+                            if (++rows % INSERT_BATCH_SIZE == 0) {
+                                update.executeBatch();
+                            }
+                        }
+                    }
+                    update.executeBatch();
+                    connection.commit();
+                    return rows;
+                } catch (SQLException | RuntimeException e) {
+                    update.clearBatch();
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            });
+            total += sealed;
+        } while (sealed > 0);
+        // Cached lookups may still hold the plaintext
+        EntryCache cache = lookupCache;
+        if (cache != null) {
+            cache.clear();
+        }
+        return total;
+    }
+
+    public void addChangeListener(ChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    // Caps the findPassword cache at maxEntries terms; 0 switches caching off. Resizing starts
+    // with an empty cache and fresh counters.
+    public void setLookupCacheSize(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative");
+        }
+        lookupCache = maxEntries == 0 ? null : new EntryCache(maxEntries);
+    }
+
+    // Counters of the findPassword cache, all zero while it is switched off
+    public CacheStats getLookupCacheStats() {
+        EntryCache cache = lookupCache;
+        return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
+    }
+
+    // Runs on the write connection right after the commit. The change is in the vault by then, so
+    // nothing here may make the write look failed: an index that cannot be brought up to date is
+    // dropped and rebuilt on next use, and a listener that throws is reported and skipped.
+    private void fireChange(ConnectionPool.PooledConnection db, ChangeEvent.Type type, List<EntryMetadata> entries) {
+        if (type == ChangeEvent.Type.INSERTED) {
+            metrics.rowsInserted(entries.size());
+        } else if (type == ChangeEvent.Type.DELETED) {
+            metrics.rowsDeleted(entries.size());
+        }
+        TrigramIndex index = searchIndex;
+        if (index != null) {
+            try {
+                if (type == ChangeEvent.Type.INSERTED) {
+                    for (EntryMetadata entry : entries) {
+                        index.put(entry.getId(), entry.getCreatedAt(), entry.getAppName(), entry.getUsername());
+                    }
+                } else if (type == ChangeEvent.Type.DELETED) {
+                    for (EntryMetadata entry : entries) {
+                        index.remove(entry.getId());
+                    }
+                } else {
+                    fillSearchIndex(db, index);
+                }
+            } catch (SQLException | RuntimeException e) {
+                searchIndex = null;
+                System.err.println("Error updating search index: " + e.getMessage());
+            }
+        }
+        EntryCache cache = lookupCache;
+        if (cache != null) {
+            if (type == ChangeEvent.Type.INSERTED) {
+                cache.inserted(entries);
+            } else if (type == ChangeEvent.Type.DELETED) {
+                cache.deleted(entries);
+            } else {
+                cache.clear();
+            }
+        }
+        if (changeListeners.isEmpty() || (type != ChangeEvent.Type.INVALIDATED && entries.isEmpty())) {
+            return;
+        }
+        ChangeEvent event = new ChangeEvent(type, entries);
+        for (ChangeListener listener : changeListeners) {
+            try {
+                listener.vaultChanged(event);
+            } catch (RuntimeException e) {
+                System.err.println("Error in change listener: " + e.getMessage());
+            }
+        }
+    }
+
+    // Work that runs while holding one pooled connection
+    private interface SqlWork<T> {
+        T run(ConnectionPool.PooledConnection db) throws SQLException;
+    }
+
+    // Turns the current row into an entry; which one depends on the columns selected
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private <T> T read(SqlWork<T> work) throws SQLException {
+        ConnectionPool.PooledConnection db = pool.acquireReader();
+        try {
+            return work.run(db);
+        } finally {
+            pool.releaseReader(db);
+        }
+    }
+
+    private <T> T write(SqlWork<T> work) throws SQLException {
+        ConnectionPool.PooledConnection db = pool.acquireWriter();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = work.run(db);
+            failed = false;
+            return result;
+        } finally {
+            metrics.record(VaultMetrics.Operation.TRANSACTION, start, failed);
+            pool.releaseWriter();
+        }
+    }
+
+    // Work measured as one operation of the metrics
+    private interface TimedWork<T> {
+        T run() throws SQLException;
+    }
+
+    private <T> T timed(VaultMetrics.Operation operation, TimedWork<T> work) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = work.run();
+            failed = false;
+            return result;
+        } finally {
+            metrics.record(operation, start, failed);
+        }
+    }
+
+    // Operation counts and latencies, row counters and the slow operation threshold; also
+    // registered as an MXBean for the lifetime of this manager
+    public VaultMetrics getMetrics() {
+        return metrics;
+    }
+
+    public long getStatementCacheHits() {
+        return pool.getStatementCacheHits();
+    }
+
+    public long getStatementCacheMisses() {
+        return pool.getStatementCacheMisses();
     }
     
     // Add this method at the end of the class
     public void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-            } catch (SQLException e) {
-                // Log the error but don't throw it
-                System.err.println("Error closing database connection: " + e.getMessage());
-            }
+        cipher = null;
+        metrics.unregister();
+        if (pool != null) {
+            pool.close();
         }
     }
 }
\ No newline at end of file
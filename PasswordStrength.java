@@ -0,0 +1,145 @@
+import java.util.List;
+import java.util.stream.IntStream;
+
+// Password strength scoring with no Swing or regex dependency. Each password is classified in a
+// single pass over its characters using a lookup table for ASCII, so scoring allocates nothing
+// and can run headless or in bulk.
+public final class PasswordStrength {
+    private static final int UPPER = 1;
+    private static final int LOWER = 2;
+    private static final int DIGIT = 4;
+    private static final int SYMBOL = 8;
+    // Character class of every ASCII code point; everything else counts as a symbol
+    private static final byte[] CLASS_OF = new byte[128];
+    // Printable ASCII characters that are neither letters nor digits
+    private static final int ASCII_SYMBOLS = 95 - 26 - 26 - 10;
+    // Rough alphabet size credited to passwords using characters outside ASCII
+    private static final int NON_ASCII_POOL = 100;
+    // Below this many passwords a parallel batch costs more in coordination than it saves
+    private static final int PARALLEL_THRESHOLD = 4_096;
+    private static final double LOG2 = Math.log(2);
+
+    static {
+        for (int c = 0; c < CLASS_OF.length; c++) {
+            if (c >= 'A' && c <= 'Z') {
+                CLASS_OF[c] = UPPER;
+            } else if (c >= 'a' && c <= 'z') {
+                CLASS_OF[c] = LOWER;
+            } else if (c >= '0' && c <= '9') {
+                CLASS_OF[c] = DIGIT;
+            } else {
+                CLASS_OF[c] = SYMBOL;
+            }
+        }
+    }
+
+    public static class Result {
+        private final int score;
+        private final double entropyBits;
+        private final int length;
+        private final int classes;
+
+        private Result(int score, double entropyBits, int length, int classes) {
+            this.score = score;
+            this.entropyBits = entropyBits;
+            this.length = length;
+            this.classes = classes;
+        }
+
+        // 0-100: up to 40 points for length and 15 for each character class used
+        public int getScore() { return score; }
+        // Estimated bits of entropy, with repeated and sequential characters discounted
+        public double getEntropyBits() { return entropyBits; }
+        public int getLength() { return length; }
+        public boolean hasUpperCase() { return (classes & UPPER) != 0; }
+        public boolean hasLowerCase() { return (classes & LOWER) != 0; }
+        public boolean hasDigits() { return (classes & DIGIT) != 0; }
+        public boolean hasSymbols() { return (classes & SYMBOL) != 0; }
+    }
+
+    private PasswordStrength() {
+    }
+
+    public static int score(CharSequence password) {
+        int classes = 0;
+        for (int i = 0, n = password.length(); i < n; i++) {
+            classes |= classOf(password.charAt(i));
+        }
+        return score(password.length(), classes);
+    }
+
+    public static Result evaluate(CharSequence password) {
+        int length = password.length();
+        int classes = 0;
+        boolean nonAscii = false;
+        // Characters that repeat or continue a run (abc, 321) from the previous one
+        int predictable = 0;
+        char previous = 0;
+        int step = 0;
+        for (int i = 0; i < length; i++) {
+            char c = password.charAt(i);
+            classes |= classOf(c);
+            nonAscii |= c >= 128;
+            if (i > 0) {
+                int delta = c - previous;
+                if (delta == 0 || ((delta == 1 || delta == -1) && delta == step
+                        && classOf(c) == classOf(previous) && classOf(c) != SYMBOL)) {
+                    predictable++;
+                }
+                step = delta == 1 || delta == -1 ? delta : 0;
+            }
+            previous = c;
+        }
+        return new Result(score(length, classes), entropyBits(length, predictable, poolSize(classes, nonAscii)), length, classes);
+    }
+
+    // Scores every password, in parallel once the batch is large enough to benefit
+    public static int[] scoreAll(List<? extends CharSequence> passwords) {
+        int[] scores = new int[passwords.size()];
+        IntStream indexes = IntStream.range(0, scores.length);
+        if (scores.length >= PARALLEL_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> scores[i] = score(passwords.get(i)));
+        return scores;
+    }
+
+    public static Result[] evaluateAll(List<? extends CharSequence> passwords) {
+        Result[] results = new Result[passwords.size()];
+        IntStream indexes = IntStream.range(0, results.length);
+        if (results.length >= PARALLEL_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> results[i] = evaluate(passwords.get(i)));
+        return results;
+    }
+
+    private static int classOf(char c) {
+        return c < 128 ? CLASS_OF[c] : SYMBOL;
+    }
+
+    private static int score(int length, int classes) {
+        int strength = Math.min(length * 4, 40);
+        strength += 15 * Integer.bitCount(classes);
+        return Math.min(strength, 100);
+    }
+
+    private static int poolSize(int classes, boolean nonAscii) {
+        int pool = 0;
+        if ((classes & UPPER) != 0) pool += 26;
+        if ((classes & LOWER) != 0) pool += 26;
+        if ((classes & DIGIT) != 0) pool += 10;
+        if ((classes & SYMBOL) != 0) pool += nonAscii ? NON_ASCII_POOL : ASCII_SYMBOLS;
+        return pool;
+    }
+
+    // Every unpredictable character draws from the whole pool; a repeated or sequential one adds
+    // about a bit, since an attacker only has to guess that the pattern continues
+    private static double entropyBits(int length, int predictable, int pool) {
+        if (length == 0) {
+            return 0.0;
+        }
+        double bitsPerChar = Math.log(pool) / LOG2;
+        return (length - predictable) * bitsPerChar + predictable;
+    }
+}
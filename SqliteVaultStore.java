@@ -0,0 +1,67 @@
+import java.sql.SQLException;
+import java.util.List;
+
+// VaultStore over a PasswordManager and its SQLite database. The manager stays available for
+// everything beyond the common operations, such as ranked search, paging and change events.
+public class SqliteVaultStore implements VaultStore {
+    private final PasswordManager passwordManager;
+
+    public SqliteVaultStore(PasswordManager passwordManager) {
+        this.passwordManager = passwordManager;
+    }
+
+    public PasswordManager getPasswordManager() {
+        return passwordManager;
+    }
+
+    @Override
+    public long append(String appName, String link, String username, String password) throws SQLException {
+        return passwordManager.appendToFile(null, appName, link, username, password);
+    }
+
+    @Override
+    public int appendAll(Iterable<PasswordManager.PasswordEntry> entries) throws SQLException {
+        return passwordManager.appendAll(entries);
+    }
+
+    @Override
+    public List<PasswordManager.PasswordEntry> readAll() throws SQLException {
+        return passwordManager.readFile(null);
+    }
+
+    @Override
+    public PasswordManager.PasswordEntry find(String searchTerm) throws SQLException {
+        return passwordManager.findPassword(null, searchTerm);
+    }
+
+    @Override
+    public int count() throws SQLException {
+        return passwordManager.countEntries();
+    }
+
+    @Override
+    public boolean removeById(long id) throws SQLException {
+        return passwordManager.deleteById(id);
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public int removeByPassword(String password) throws SQLException {
+        return passwordManager.removePassword(null, password);
+    }
+
+    @Override
+    public boolean removeByIdentifier(String identifier) throws SQLException {
+        return passwordManager.removePasswordByIdentifier(null, identifier);
+    }
+
+    @Override
+    public void clear() throws SQLException {
+        passwordManager.deleteAll();
+    }
+
+    @Override
+    public void close() {
+        passwordManager.closeConnection();
+    }
+}
@@ -0,0 +1,120 @@
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+
+// Writes vault entries as the CLI's fixed-width table. Each row is padded into one StringBuilder
+// that is reused for every row and then handed to a large BufferedWriter, so no format string is
+// parsed per row and the console sees one write per buffer rather than one per row. Passwords are
+// masked unless the renderer was made to reveal them. Nothing is flushed until a table ends.
+final class TableRenderer {
+    static final String PASSWORD_MASK = "********";
+    private static final int BUFFER_CHARS = 64 * 1024;
+    private static final String RULE = "----------------------------------------";
+    private static final String[] TITLES = { "Website", "Link", "Username", "Password", "Length", "Date/Time" };
+    // Minimum widths; longer values push the rest of the row along rather than being cut
+    private static final int[] WIDTHS = { 20, 30, 15, 20, 10, 20 };
+
+    // Supplies the page following after, or the first page when after is null
+    interface PageSource {
+        PasswordManager.Page<? extends PasswordManager.EntryMetadata> next(PasswordManager.PageKey after) throws SQLException;
+    }
+
+    private final Writer out;
+    private final boolean revealPasswords;
+    private final StringBuilder row = new StringBuilder(256);
+
+    TableRenderer(Writer out, boolean revealPasswords) {
+        this.out = out;
+        this.revealPasswords = revealPasswords;
+    }
+
+    // A renderer on standard output, in the console's encoding
+    static TableRenderer toStandardOutput(boolean revealPasswords) {
+        return new TableRenderer(new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), Charset.defaultCharset()), BUFFER_CHARS),
+            revealPasswords);
+    }
+
+    // Renders a whole table, pulling one page at a time so that memory stays flat however large
+    // the vault is. Returns the number of rows written.
+    long renderPages(String title, PageSource pages) throws SQLException, IOException {
+        header(title);
+        long rows = 0;
+        PasswordManager.PageKey nextKey = null;
+        do {
+            PasswordManager.Page<? extends PasswordManager.EntryMetadata> page = pages.next(nextKey);
+            for (PasswordManager.EntryMetadata entry : page.getEntries()) {
+                row(entry);
+                rows++;
+            }
+            nextKey = page.getNextKey();
+        } while (nextKey != null);
+        end();
+        return rows;
+    }
+
+    // Renders a table of entries already in memory
+    void render(String title, Iterable<? extends PasswordManager.EntryMetadata> entries) throws IOException {
+        header(title);
+        for (PasswordManager.EntryMetadata entry : entries) {
+            row(entry);
+        }
+        end();
+    }
+
+    void header(String title) throws IOException {
+        System.out.flush();
+        row.setLength(0);
+        row.append('\n').append(title).append('\n').append(RULE).append('\n');
+        for (int i = 0; i < TITLES.length; i++) {
+            cell(i, TITLES[i]);
+        }
+        row.append('\n').append(RULE).append('\n');
+        out.append(row);
+    }
+
+    void row(PasswordManager.EntryMetadata entry) throws IOException {
+        row.setLength(0);
+        cell(0, entry.getAppName());
+        cell(1, entry.getLink());
+        cell(2, entry.getUsername());
+        cell(3, revealPasswords && entry instanceof PasswordManager.PasswordEntry
+            ? ((PasswordManager.PasswordEntry) entry).getPassword() : PASSWORD_MASK);
+        int start = row.length();
+        row.append(entry.getLength());
+        pad(start, WIDTHS[4]);
+        row.append(' ');
+        cell(5, entry.getDateTime());
+        row.append('\n');
+        out.append(row);
+    }
+
+    // Closes the table and flushes it to the console
+    void end() throws IOException {
+        out.write(RULE);
+        out.write('\n');
+        out.flush();
+    }
+
+    // Left-aligned value padded to the column width, then the column gap; the last column keeps
+    // its padding too, as the table always had
+    private void cell(int column, String value) {
+        int start = row.length();
+        row.append(value);
+        pad(start, WIDTHS[column]);
+        if (column < WIDTHS.length - 1) {
+            row.append(' ');
+        }
+    }
+
+    private void pad(int start, int width) {
+        for (int i = row.length() - start; i < width; i++) {
+            row.append(' ');
+        }
+    }
+}
@@ -0,0 +1,300 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory n-gram index over the normalized website and username of every vault row, for
+// search-as-you-type. Each row gets a slot, and slots are kept in listing order (oldest first), so
+// walking any posting list backwards visits rows newest first and can stop once enough rows have
+// matched. Posting lists exist for every trigram of a value, for its first one to three
+// characters and for the whole value; a 64-bit mask of the characters in each row screens
+// candidates for terms too short to have a trigram. Deleted rows leave a tombstone until enough of
+// them pile up to rebuild the postings.
+class TrigramIndex {
+    private static final int INITIAL_SLOTS = 1_024;
+    private static final long PREFIX_FLAG = 1L << 52;
+    private static final long EXACT_FLAG = 1L << 53;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> slotOfId = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private long[] ids = new long[INITIAL_SLOTS];
+    private long[] createdAt = new long[INITIAL_SLOTS];
+    // Bit c % 64 is set for every character c in the row's website or username
+    private long[] charMasks = new long[INITIAL_SLOTS];
+    // null for free slots
+    private String[] websites = new String[INITIAL_SLOTS];
+    private String[] usernames = new String[INITIAL_SLOTS];
+    private int slots;
+    private int tombstones;
+
+    // Slots holding an n-gram, in ascending order
+    private static final class Postings {
+        private int[] slots = new int[4];
+        private int size;
+
+        void add(int slot) {
+            // A row adds all its n-grams at once, so a repeated one repeats the last slot
+            if (size > 0 && slots[size - 1] == slot) {
+                return;
+            }
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+    }
+
+    // Adds or replaces the row; website and username may be in any case. Rows normally arrive in
+    // listing order. One that does not, say after the clock went back, costs a rebuild.
+    void put(long id, long created, String website, String username) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = slotOfId.remove(id);
+            if (existing != null) {
+                free(existing);
+            }
+            boolean inOrder = slots == 0 || created > createdAt[slots - 1]
+                || (created == createdAt[slots - 1] && id > ids[slots - 1]);
+            add(id, created, normalize(website), normalize(username));
+            if (!inOrder) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotOfId.remove(id);
+            if (slot != null) {
+                free(slot);
+                if (tombstones > INITIAL_SLOTS && tombstones > slots / 2) {
+                    compact();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            slotOfId.clear();
+            postings.clear();
+            Arrays.fill(websites, 0, slots, null);
+            Arrays.fill(usernames, 0, slots, null);
+            slots = 0;
+            tombstones = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return slotOfId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Ids of the best limit rows whose website or username contains term: exact matches, then
+    // prefix matches, then other substrings, newest first within each group
+    List<Long> search(String term, int limit) {
+        String needle = normalize(term);
+        if (needle == null || needle.isEmpty() || limit < 1) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            List<Long> result = new ArrayList<>(Math.min(limit, 64));
+            collect(result, postings.get(exactKey(needle)), needle, 0, limit);
+
+            // Every row containing the term contains each of its trigrams, so the shortest such
+            // list bounds both the prefix and the substring candidates
+            Postings rarest = null;
+            for (int i = 0; i + 3 <= needle.length(); i++) {
+                Postings list = postings.get(trigramKey(needle, i));
+                if (list == null) {
+                    return result;
+                }
+                if (rarest == null || list.size < rarest.size) {
+                    rarest = list;
+                }
+            }
+            Postings starting = postings.get(prefixKey(needle));
+            if (starting != null) {
+                collect(result, rarest != null && rarest.size < starting.size ? rarest : starting, needle, 1, limit);
+            }
+            if (rarest != null) {
+                collect(result, rarest, needle, 2, limit);
+            } else {
+                collectShort(result, needle, limit);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Adds candidates of the given tier, newest first, until result holds limit ids
+    private void collect(List<Long> result, Postings candidates, String needle, int wanted, int limit) {
+        if (candidates == null) {
+            return;
+        }
+        for (int i = candidates.size - 1; i >= 0 && result.size() < limit; i--) {
+            int slot = candidates.slots[i];
+            if (isTier(slot, needle, wanted)) {
+                result.add(ids[slot]);
+            }
+        }
+    }
+
+    // Substring matches for terms shorter than a trigram: every slot is visited, but most are
+    // ruled out by their character mask alone
+    private void collectShort(List<Long> result, String needle, int limit) {
+        long mask = charMask(needle);
+        for (int slot = slots - 1; slot >= 0 && result.size() < limit; slot--) {
+            if ((charMasks[slot] & mask) == mask && isTier(slot, needle, 2)) {
+                result.add(ids[slot]);
+            }
+        }
+    }
+
+    // Tier 0 is an exact match, 1 a prefix match, 2 any other substring. Each test starts with
+    // the check that rules most candidates out, since this runs once per posting walked.
+    private boolean isTier(int slot, String needle, int tier) {
+        String website = websites[slot];
+        if (website == null) {
+            return false;
+        }
+        String username = usernames[slot] == null ? "" : usernames[slot];
+        switch (tier) {
+            case 0:
+                return website.equals(needle) || username.equals(needle);
+            case 1:
+                return (website.startsWith(needle) || username.startsWith(needle))
+                    && !website.equals(needle) && !username.equals(needle);
+            default:
+                return (website.contains(needle) || username.contains(needle))
+                    && !website.startsWith(needle) && !username.startsWith(needle);
+        }
+    }
+
+    private void add(long id, long created, String website, String username) {
+        if (slots == ids.length) {
+            grow();
+        }
+        int slot = slots++;
+        ids[slot] = id;
+        createdAt[slot] = created;
+        charMasks[slot] = charMask(website) | charMask(username);
+        websites[slot] = website;
+        usernames[slot] = username;
+        slotOfId.put(id, slot);
+        addGrams(slot, website);
+        addGrams(slot, username);
+    }
+
+    private void addGrams(int slot, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        postings.computeIfAbsent(exactKey(value), key -> new Postings()).add(slot);
+        for (int n = 1; n <= Math.min(3, value.length()); n++) {
+            postings.computeIfAbsent(prefixKey(value.substring(0, n)), key -> new Postings()).add(slot);
+        }
+        for (int i = 0; i + 3 <= value.length(); i++) {
+            postings.computeIfAbsent(trigramKey(value, i), key -> new Postings()).add(slot);
+        }
+    }
+
+    private static long trigramKey(String value, int start) {
+        return ((long) value.charAt(start) << 32) | ((long) value.charAt(start + 1) << 16) | value.charAt(start + 2);
+    }
+
+    // Key of the list of values starting with the first one to three characters of value
+    private static long prefixKey(String value) {
+        int n = Math.min(3, value.length());
+        long key = PREFIX_FLAG | ((long) n << 48);
+        for (int i = 0; i < n; i++) {
+            key |= (long) value.charAt(i) << (32 - 16 * i);
+        }
+        return key;
+    }
+
+    // Values sharing a hash share a list; tier tells them apart
+    private static long exactKey(String value) {
+        return EXACT_FLAG | (value.hashCode() & 0xFFFFFFFFL);
+    }
+
+    private static long charMask(String value) {
+        long mask = 0;
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                mask |= 1L << value.charAt(i);
+            }
+        }
+        return mask;
+    }
+
+    // Postings keep pointing at a freed slot until the next compaction; tier skips it
+    private void free(int slot) {
+        websites[slot] = null;
+        usernames[slot] = null;
+        tombstones++;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        createdAt = Arrays.copyOf(createdAt, capacity);
+        charMasks = Arrays.copyOf(charMasks, capacity);
+        websites = Arrays.copyOf(websites, capacity);
+        usernames = Arrays.copyOf(usernames, capacity);
+    }
+
+    // Rebuilds the postings from the live rows, restoring listing order
+    private void compact() {
+        Integer[] live = new Integer[slotOfId.size()];
+        int count = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (websites[slot] != null) {
+                live[count++] = slot;
+            }
+        }
+        Arrays.sort(live, (a, b) -> createdAt[a] != createdAt[b]
+            ? Long.compare(createdAt[a], createdAt[b]) : Long.compare(ids[a], ids[b]));
+        long[] oldIds = ids;
+        long[] oldCreatedAt = createdAt;
+        String[] oldWebsites = websites;
+        String[] oldUsernames = usernames;
+        int capacity = Math.max(INITIAL_SLOTS, Integer.highestOneBit(Math.max(1, live.length)) * 2);
+        ids = new long[capacity];
+        createdAt = new long[capacity];
+        charMasks = new long[capacity];
+        websites = new String[capacity];
+        usernames = new String[capacity];
+        slots = 0;
+        tombstones = 0;
+        slotOfId.clear();
+        postings.clear();
+        for (Integer slot : live) {
+            add(oldIds[slot], oldCreatedAt[slot], oldWebsites[slot], oldUsernames[slot]);
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+}
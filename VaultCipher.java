@@ -0,0 +1,128 @@
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+// AES-256-GCM sealing of vault secrets under a key derived from the master password. Deriving the
+// key is deliberately slow and happens once per unlock; sealing and opening then cost about a
+// microsecond each. Every thread keeps its own Cipher and SecureRandom, so bulk work on several
+// threads neither shares nor re-creates them. A sealed value is a version byte, a random 96-bit
+// IV and the ciphertext with its 128-bit tag.
+class VaultCipher {
+    static final int SALT_BYTES = 16;
+    // PBKDF2-HMAC-SHA256 work factor for new vaults; existing vaults keep the one they were created with
+    static final int DEFAULT_ITERATIONS = 310_000;
+    private static final byte VERSION = 1;
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final byte[] CHECK_PLAINTEXT = "password-manager-key-check".getBytes(StandardCharsets.UTF_8);
+
+    private final SecretKey key;
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(VaultCipher::newCipher);
+    private final ThreadLocal<SecureRandom> random = ThreadLocal.withInitial(VaultCipher::newSecureRandom);
+
+    private VaultCipher(SecretKey key) {
+        this.key = key;
+    }
+
+    // Clears masterPassword once the key has been derived
+    static VaultCipher derive(char[] masterPassword, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(masterPassword, salt, iterations, 256);
+        try {
+            byte[] encoded = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            try {
+                return new VaultCipher(new SecretKeySpec(encoded, "AES"));
+            } finally {
+                Arrays.fill(encoded, (byte) 0);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 is not available", e);
+        } finally {
+            spec.clearPassword();
+            Arrays.fill(masterPassword, '\0');
+        }
+    }
+
+    static byte[] newSalt() {
+        byte[] salt = new byte[SALT_BYTES];
+        newSecureRandom().nextBytes(salt);
+        return salt;
+    }
+
+    byte[] seal(String plaintext) {
+        return seal(plaintext.getBytes(StandardCharsets.UTF_8));
+    }
+
+    String open(byte[] sealed) {
+        return new String(openBytes(sealed), StandardCharsets.UTF_8);
+    }
+
+    // Sealed constant stored with the vault, so that a wrong master password is caught at unlock
+    // rather than when the first secret fails to open
+    byte[] keyCheck() {
+        return seal(CHECK_PLAINTEXT);
+    }
+
+    boolean verifies(byte[] keyCheck) {
+        try {
+            return Arrays.equals(openBytes(keyCheck), CHECK_PLAINTEXT);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private byte[] seal(byte[] plaintext) {
+        byte[] iv = new byte[IV_BYTES];
+        random.get().nextBytes(iv);
+        Cipher cipher = ciphers.get();
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            ByteBuffer sealed = ByteBuffer.allocate(1 + IV_BYTES + cipher.getOutputSize(plaintext.length));
+            sealed.put(VERSION).put(iv);
+            cipher.doFinal(ByteBuffer.wrap(plaintext), sealed);
+            return sealed.array();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to encrypt secret", e);
+        }
+    }
+
+    private byte[] openBytes(byte[] sealed) {
+        if (sealed.length < 1 + IV_BYTES + TAG_BITS / 8 || sealed[0] != VERSION) {
+            throw new IllegalArgumentException("Not a sealed vault secret");
+        }
+        Cipher cipher = ciphers.get();
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, sealed, 1, IV_BYTES));
+            return cipher.doFinal(sealed, 1 + IV_BYTES, sealed.length - 1 - IV_BYTES);
+        } catch (AEADBadTagException e) {
+            throw new IllegalArgumentException("Secret was not sealed with this key or has been altered", e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to decrypt secret", e);
+        }
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES/GCM is not available", e);
+        }
+    }
+
+    private static SecureRandom newSecureRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+}
@@ -0,0 +1,271 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// RFC 4180 CSV reading and writing of vault entries over FileChannels. Both directions work on
+// fixed-size buffers that are reused for every row, so memory stays flat however many rows a file
+// holds: the writer encodes each row into one byte buffer and drains it to the channel when full,
+// and the reader decodes one buffer of bytes at a time and hands out one record at a time.
+// Columns are website, link, username, password, length and date/time, with a header row.
+final class VaultCsv {
+    static final String HEADER = "website,link,username,password,length,date/time";
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int MIN_FIELDS = 4;
+
+    private VaultCsv() {
+    }
+
+    // Appends value to row, quoted only if it contains a comma, quote or line break
+    static void appendField(StringBuilder row, String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            row.append(value);
+            return;
+        }
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        row.append('"');
+    }
+
+    static void appendRow(StringBuilder row, PasswordManager.PasswordEntry entry) {
+        appendRow(row, entry, entry.getPassword());
+    }
+
+    static void appendRow(StringBuilder row, PasswordManager.EntryMetadata entry, String password) {
+        appendField(row, entry.getAppName());
+        row.append(',');
+        appendField(row, entry.getLink());
+        row.append(',');
+        appendField(row, entry.getUsername());
+        row.append(',');
+        appendField(row, password);
+        row.append(',').append(entry.getLength()).append(',');
+        appendField(row, entry.getDateTime());
+    }
+
+    // Writes entries to a temporary file next to file and moves it into place once complete, so
+    // that an interrupted export never leaves a truncated file behind. Returns the rows written.
+    static long write(Path file, Iterator<PasswordManager.PasswordEntry> entries) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        long rows = 0;
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+                ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_BYTES);
+                StringBuilder row = new StringBuilder(256);
+                row.append(HEADER).append('\n');
+                encode(channel, encoder, bytes, row);
+                while (entries.hasNext()) {
+                    row.setLength(0);
+                    appendRow(row, entries.next());
+                    row.append('\n');
+                    encode(channel, encoder, bytes, row);
+                    rows++;
+                }
+                drain(channel, bytes);
+                channel.force(false);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return rows;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void encode(FileChannel channel, CharsetEncoder encoder, ByteBuffer bytes, StringBuilder row) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(row);
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, true);
+            if (result.isOverflow()) {
+                drain(channel, bytes);
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                break;
+            }
+        }
+        encoder.reset();
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer bytes) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    // Lazily parses file into entries. Records are read as the iterator advances, so a caller that
+    // feeds it into appendAll holds one record at a time. A header row is skipped, as are blank
+    // lines; the length column is ignored, since it is recomputed from the password. Read and
+    // format errors surface from the iterator as UncheckedIOException. Closing releases the file.
+    static Records read(Path file) throws IOException {
+        return new Records(FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    static final class Records implements Iterator<PasswordManager.PasswordEntry>, Iterable<PasswordManager.PasswordEntry>, AutoCloseable {
+        private final FileChannel channel;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final CharBuffer chars = CharBuffer.allocate(BUFFER_BYTES);
+        private final List<String> fields = new ArrayList<>(8);
+        private final StringBuilder field = new StringBuilder(64);
+        private boolean endOfInput;
+        private long record;
+        private PasswordManager.PasswordEntry next;
+
+        private Records(FileChannel channel) {
+            this.channel = channel;
+            chars.flip();
+        }
+
+        @Override
+        public Iterator<PasswordManager.PasswordEntry> iterator() {
+            return this;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null && readRecord()) {
+                    next = toEntry();
+                }
+                return next != null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public PasswordManager.PasswordEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            PasswordManager.PasswordEntry entry = next;
+            next = null;
+            return entry;
+        }
+
+        // Records read so far, including the header and blank lines
+        long records() {
+            return record;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        // null for the header and blank lines
+        private PasswordManager.PasswordEntry toEntry() throws IOException {
+            if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                return null;
+            }
+            if (record == 1 && fields.get(0).equalsIgnoreCase("website")) {
+                return null;
+            }
+            if (fields.size() < MIN_FIELDS) {
+                throw new IOException("Record " + record + ": expected at least " + MIN_FIELDS + " fields, found " + fields.size());
+            }
+            String dateTime = fields.size() > 5 ? fields.get(5) : "";
+            String password = fields.get(3);
+            try {
+                return new PasswordManager.PasswordEntry(fields.get(0), fields.get(1), fields.get(2), password, password.length(), dateTime);
+            } catch (DateTimeParseException e) {
+                throw new IOException("Record " + record + ": unreadable date/time '" + dateTime + "'", e);
+            }
+        }
+
+        // Fills fields with the next record; false at the end of the file
+        private boolean readRecord() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            int c = read();
+            if (c < 0) {
+                return false;
+            }
+            record++;
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c < 0) {
+                        throw new IOException("Record " + record + ": unterminated quoted field");
+                    }
+                    if (c == '"') {
+                        c = read();
+                        if (c != '"') {
+                            quoted = false;
+                            continue;
+                        }
+                    }
+                    field.append((char) c);
+                } else if (c < 0 || c == '\n') {
+                    fields.add(field.toString());
+                    return true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (!chars.hasRemaining() && !fill()) {
+                return -1;
+            }
+            return chars.get();
+        }
+
+        private boolean fill() throws IOException {
+            chars.clear();
+            // After compact, the position of bytes is the number of bytes not yet decoded
+            while (chars.position() == 0 && (!endOfInput || bytes.position() > 0)) {
+                if (!endOfInput && channel.read(bytes) < 0) {
+                    endOfInput = true;
+                }
+                bytes.flip();
+                CoderResult result = decoder.decode(bytes, chars, endOfInput);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                bytes.compact();
+            }
+            chars.flip();
+            return chars.hasRemaining();
+        }
+    }
+}
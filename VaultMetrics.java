@@ -0,0 +1,349 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// Counts, error counts and latency histograms of PasswordManager operations, plus row counters of
+// the database work behind them. Recording costs a few uncontended atomic increments and no
+// allocation, so the metrics stay on in production. They are read through JMX, through a periodic
+// JSON report, or with getJson; operations slower than a threshold are also recorded as JFR events.
+public final class VaultMetrics implements VaultMetricsMXBean {
+    public enum Operation {
+        // One password from generatePassword
+        GENERATE,
+        // One call of generatePasswords, however many passwords it makes; passwordStream is not timed
+        GENERATE_BULK,
+        INSERT,
+        READ,
+        FIND,
+        SEARCH,
+        REMOVE,
+        // CSV export and import, and mapped vault export
+        TRANSFER,
+        UNLOCK,
+        // Time spent holding the write connection, for every write whatever the operation
+        TRANSACTION
+    }
+
+    private static final long DEFAULT_SLOW_THRESHOLD_MILLIS = 100;
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Operation.values().length];
+    private final LongAdder rowsReturned = new LongAdder();
+    private final LongAdder rowsInserted = new LongAdder();
+    private final LongAdder rowsDeleted = new LongAdder();
+    private volatile long slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_THRESHOLD_MILLIS);
+    private ObjectName registeredName;
+    private ScheduledExecutorService reporter;
+
+    VaultMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    void record(Operation operation, long startNanos, boolean failed) {
+        long nanos = System.nanoTime() - startNanos;
+        histograms[operation.ordinal()].record(nanos, failed);
+        if (nanos >= slowThresholdNanos) {
+            SlowOperationEvent event = new SlowOperationEvent();
+            if (event.shouldCommit()) {
+                event.operation = operation.name();
+                event.latency = nanos;
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+
+    void rowsReturned(long rows) {
+        rowsReturned.add(rows);
+    }
+
+    void rowsInserted(long rows) {
+        rowsInserted.add(rows);
+    }
+
+    void rowsDeleted(long rows) {
+        rowsDeleted.add(rows);
+    }
+
+    public OperationStats getStats(Operation operation) {
+        return histograms[operation.ordinal()].snapshot(operation);
+    }
+
+    @Override
+    public List<OperationStats> getOperations() {
+        List<OperationStats> stats = new ArrayList<>(histograms.length);
+        for (Operation operation : Operation.values()) {
+            stats.add(getStats(operation));
+        }
+        return stats;
+    }
+
+    @Override
+    public long getRowsReturned() {
+        return rowsReturned.sum();
+    }
+
+    @Override
+    public long getRowsInserted() {
+        return rowsInserted.sum();
+    }
+
+    @Override
+    public long getRowsDeleted() {
+        return rowsDeleted.sum();
+    }
+
+    @Override
+    public long getSlowOperationThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+
+    @Override
+    public void setSlowOperationThresholdMillis(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Threshold must not be negative");
+        }
+        slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    // Counters are reset one by one, so operations running meanwhile may land on either side
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        rowsReturned.reset();
+        rowsInserted.reset();
+        rowsDeleted.reset();
+    }
+
+    @Override
+    public String getJson() {
+        StringBuilder json = new StringBuilder(2048);
+        json.append("{\"timestamp\":").append(System.currentTimeMillis()).append(",\"operations\":{");
+        Operation[] operations = Operation.values();
+        for (int i = 0; i < operations.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            OperationStats stats = getStats(operations[i]);
+            json.append('"').append(stats.getName()).append("\":{\"count\":").append(stats.getCount())
+                .append(",\"errors\":").append(stats.getErrors())
+                .append(",\"meanMicros\":").append(format(stats.getMeanMicros()))
+                .append(",\"p50Micros\":").append(format(stats.getP50Micros()))
+                .append(",\"p90Micros\":").append(format(stats.getP90Micros()))
+                .append(",\"p99Micros\":").append(format(stats.getP99Micros()))
+                .append(",\"maxMicros\":").append(format(stats.getMaxMicros())).append('}');
+        }
+        json.append("},\"rows\":{\"returned\":").append(getRowsReturned())
+            .append(",\"inserted\":").append(getRowsInserted())
+            .append(",\"deleted\":").append(getRowsDeleted()).append("}}");
+        return json.toString();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    // Hands getJson to sink every period on a daemon thread until stopReporting or unregister.
+    // A new call replaces the previous schedule.
+    public synchronized void startReporting(long period, TimeUnit unit, Consumer<String> sink) {
+        stopReporting();
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vault-metrics-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> sink.accept(getJson()), period, period, unit);
+    }
+
+    public synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    // Registers with the platform MBean server under the vault URL. A failure leaves the metrics
+    // working without JMX rather than failing to open the vault.
+    synchronized void register(String dbUrl) {
+        try {
+            ObjectName name = new ObjectName("PasswordManager:type=VaultMetrics,vault=" + ObjectName.quote(dbUrl)
+                + ",instance=" + INSTANCES.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            registeredName = name;
+        } catch (JMException e) {
+            System.err.println("Error registering vault metrics: " + e.getMessage());
+        }
+    }
+
+    synchronized void unregister() {
+        stopReporting();
+        if (registeredName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(registeredName);
+        } catch (JMException e) {
+            System.err.println("Error unregistering vault metrics: " + e.getMessage());
+        }
+        registeredName = null;
+    }
+
+    // Latencies of one operation as seen by getOperations; times are in microseconds, and
+    // percentiles are accurate to within an eighth of their value
+    public static class OperationStats {
+        private final String name;
+        private final long count;
+        private final long errors;
+        private final double meanMicros;
+        private final double p50Micros;
+        private final double p90Micros;
+        private final double p99Micros;
+        private final double maxMicros;
+
+        OperationStats(String name, long count, long errors, double meanMicros,
+                       double p50Micros, double p90Micros, double p99Micros, double maxMicros) {
+            this.name = name;
+            this.count = count;
+            this.errors = errors;
+            this.meanMicros = meanMicros;
+            this.p50Micros = p50Micros;
+            this.p90Micros = p90Micros;
+            this.p99Micros = p99Micros;
+            this.maxMicros = maxMicros;
+        }
+
+        public String getName() { return name; }
+        public long getCount() { return count; }
+        public long getErrors() { return errors; }
+        public double getMeanMicros() { return meanMicros; }
+        public double getP50Micros() { return p50Micros; }
+        public double getP90Micros() { return p90Micros; }
+        public double getP99Micros() { return p99Micros; }
+        public double getMaxMicros() { return maxMicros; }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s count=%d errors=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus",
+                name, count, errors, meanMicros, p50Micros, p90Micros, p99Micros, maxMicros);
+        }
+    }
+
+    // Log-linear buckets over nanoseconds: each power of two is split into SUB_BUCKETS equal
+    // buckets, so a bucket is at most an eighth of its value wide. Values below SUB_BUCKETS get a
+    // bucket each. Recording is one array increment plus three adders.
+    private static final class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos, boolean failed) {
+            long value = Math.max(0, nanos);
+            counts.incrementAndGet(bucket(value));
+            totalNanos.add(value);
+            maxNanos.accumulate(value);
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts.set(i, 0);
+            }
+            errors.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+        }
+
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+        }
+
+        // Highest value that falls into bucket
+        private static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return lower + (1L << shift) - 1;
+        }
+
+        OperationStats snapshot(Operation operation) {
+            long[] snapshot = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = counts.get(i);
+                count += snapshot[i];
+            }
+            long max = maxNanos.get();
+            double mean = count == 0 ? 0 : totalNanos.sum() / (double) count / 1_000;
+            return new OperationStats(operation.name().toLowerCase(Locale.ROOT), count, errors.sum(), mean,
+                percentile(snapshot, count, 0.50, max), percentile(snapshot, count, 0.90, max),
+                percentile(snapshot, count, 0.99, max), max / 1_000.0);
+        }
+
+        private static double percentile(long[] snapshot, long count, double fraction, long max) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max) / 1_000.0;
+                }
+            }
+            return max / 1_000.0;
+        }
+    }
+
+    @Name("passwordmanager.SlowOperation")
+    @Label("Slow Vault Operation")
+    @Category("Password Manager")
+    @Description("A PasswordManager operation that took longer than the slow operation threshold")
+    static final class SlowOperationEvent extends jdk.jfr.Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+
+        @Label("Failed")
+        boolean failed;
+    }
+}
@@ -0,0 +1,25 @@
+import java.util.List;
+
+// Management interface of VaultMetrics. Each PasswordManager registers one under
+// "PasswordManager:type=VaultMetrics,vault=<quoted URL>,instance=<n>", so that JConsole or any JMX
+// client can read it.
+public interface VaultMetricsMXBean {
+
+    // One row per operation type, including those that never ran
+    List<VaultMetrics.OperationStats> getOperations();
+
+    long getRowsReturned();
+
+    long getRowsInserted();
+
+    long getRowsDeleted();
+
+    long getSlowOperationThresholdMillis();
+
+    void setSlowOperationThresholdMillis(long millis);
+
+    // Everything above as a single JSON object, as written by the periodic report
+    String getJson();
+
+    void reset();
+}
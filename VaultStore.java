@@ -0,0 +1,84 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+// Where vault entries are kept, reduced to the operations every backend can serve, so that a
+// deployment can pick the one whose latency and durability fit: SqliteVaultStore is the full vault
+// with search, paging and encryption, InMemoryVaultStore keeps nothing beyond the process, and
+// AppendOnlyLogVaultStore makes every write a single sequential append. Lookups match a website or
+// username containing the term, ignoring case, and prefer exact matches, then prefix matches.
+public interface VaultStore extends AutoCloseable {
+
+    // Stores a new entry stamped with the current time and returns its id
+    long append(String appName, String link, String username, String password) throws SQLException, IOException;
+
+    // Stores every entry; those without a creation time are stamped with the current time
+    int appendAll(Iterable<PasswordManager.PasswordEntry> entries) throws SQLException, IOException;
+
+    // Every entry, newest first
+    List<PasswordManager.PasswordEntry> readAll() throws SQLException, IOException;
+
+    // The best entry for searchTerm, or null if nothing matches
+    PasswordManager.PasswordEntry find(String searchTerm) throws SQLException, IOException;
+
+    int count() throws SQLException, IOException;
+
+    boolean removeById(long id) throws SQLException, IOException;
+
+    // Removes every entry with this password and returns how many there were
+    int removeByPassword(String password) throws SQLException, IOException;
+
+    // Removes every entry whose website or username contains identifier, ignoring case
+    boolean removeByIdentifier(String identifier) throws SQLException, IOException;
+
+    void clear() throws SQLException, IOException;
+
+    @Override
+    void close() throws IOException;
+
+    // Opens the backend named by location: "memory:" for a fresh in-memory store, "log:<path>" for
+    // an append-only log file, or a jdbc:sqlite: URL for a SQLite vault
+    static VaultStore open(String location) throws IOException {
+        if (location.equals("memory:")) {
+            return new InMemoryVaultStore();
+        }
+        if (location.startsWith("log:")) {
+            return new AppendOnlyLogVaultStore(Paths.get(location.substring("log:".length())), true);
+        }
+        if (location.startsWith("jdbc:sqlite:")) {
+            return new SqliteVaultStore(new PasswordManager(location));
+        }
+        throw new IllegalArgumentException("Unknown vault location: " + location);
+    }
+
+    // As open, but a log is sealed under masterPassword and a SQLite vault is unlocked with it, so
+    // that no backend writes passwords in the clear; an in-memory store keeps them on the heap only.
+    // masterPassword is cleared afterwards. Throws IllegalArgumentException if it is wrong.
+    static VaultStore open(String location, char[] masterPassword) throws IOException, SQLException {
+        try {
+            if (location.startsWith("log:")) {
+                return new AppendOnlyLogVaultStore(Paths.get(location.substring("log:".length())), true, masterPassword);
+            }
+            if (location.startsWith("jdbc:sqlite:")) {
+                PasswordManager passwordManager = new PasswordManager(location);
+                boolean unlocked = false;
+                try {
+                    unlocked = passwordManager.unlock(masterPassword);
+                } finally {
+                    if (!unlocked) {
+                        passwordManager.closeConnection();
+                    }
+                }
+                if (!unlocked) {
+                    throw new IllegalArgumentException("Wrong master password for " + location);
+                }
+                return new SqliteVaultStore(passwordManager);
+            }
+            return open(location);
+        } finally {
+            Arrays.fill(masterPassword, '\0');
+        }
+    }
+}
@@ -0,0 +1,330 @@
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+// Table model over the whole vault that only holds the rows the user has scrolled near. Rows are
+// fetched a page at a time in the background when the table first asks for them, and the least
+// recently used pages are dropped once the cache is full, so memory and rendering cost follow the
+// visible rows rather than the vault size. Saves and removals are applied as deltas to the cached
+// rows instead of re-reading the vault. The model can also show a list of search results in
+// place of the vault; the vault rows keep tracking changes meanwhile and come back when the results
+// are cleared. All methods must be called on the event dispatch thread.
+public class VaultTableModel extends AbstractTableModel {
+    static final String LOADING = "…";
+    private static final String MASK = "••••••••";
+    private static final String[] COLUMNS = {"Website", "Link", "Username", "Password", "Length", "Date/Time"};
+
+    private final AsyncPasswordManager passwordManager;
+    private final int pageSize;
+    private final Map<Integer, PasswordManager.EntryMetadata[]> pages;
+    private final Set<Integer> pagesLoading = new HashSet<>();
+    private int rowCount;
+    // Bumped whenever row positions change, so that pages requested before that are discarded
+    private int generation;
+    private int reloadRequest;
+    // A change arrived while a count was in flight; the count may predate it and must be redone
+    private boolean reloading;
+    private boolean changedWhileReloading;
+    // Shown instead of the vault while not null
+    private List<PasswordManager.EntryMetadata> results;
+
+    public VaultTableModel(AsyncPasswordManager passwordManager, int pageSize, int maxCachedPages) {
+        this.passwordManager = passwordManager;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<Integer, PasswordManager.EntryMetadata[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, PasswordManager.EntryMetadata[]> eldest) {
+                return size() > maxCachedPages;
+            }
+        };
+        passwordManager.addChangeListener(event -> SwingUtilities.invokeLater(() -> applyChange(event)));
+    }
+
+    // Re-counts the vault and drops every cached row; visible rows are fetched again on repaint.
+    // The returned future completes after the model has been updated.
+    public CompletableFuture<Integer> reload() {
+        int requested = ++reloadRequest;
+        reloading = true;
+        changedWhileReloading = false;
+        CompletableFuture<Integer> reloaded = new CompletableFuture<>();
+        passwordManager.countEntries().whenComplete((rows, error) -> SwingUtilities.invokeLater(() -> {
+            if (requested != reloadRequest) {
+                reloaded.complete(rows);
+                return;
+            }
+            if (changedWhileReloading) {
+                reload().whenComplete((latest, latestError) -> {
+                    if (latestError != null) {
+                        reloaded.completeExceptionally(latestError);
+                    } else {
+                        reloaded.complete(latest);
+                    }
+                });
+                return;
+            }
+            reloading = false;
+            if (error != null) {
+                reloaded.completeExceptionally(error);
+                return;
+            }
+            generation++;
+            pages.clear();
+            pagesLoading.clear();
+            rowCount = rows;
+            if (results == null) {
+                fireTableDataChanged();
+            }
+            reloaded.complete(rows);
+        }));
+        return reloaded;
+    }
+
+    // Applies a committed change to the cached rows. Each inserted or deleted row costs one pass
+    // over the page cache, which is bounded, and no query; only rows that end up in a partly
+    // cached page are fetched again, and only if they are on screen.
+    private void applyChange(PasswordManager.ChangeEvent event) {
+        if (reloading) {
+            changedWhileReloading = true;
+            return;
+        }
+        if (event.getType() == PasswordManager.ChangeEvent.Type.INVALIDATED || event.getEntries().size() > pageSize) {
+            reload();
+            return;
+        }
+        if (results != null && event.getType() == PasswordManager.ChangeEvent.Type.DELETED) {
+            removeResults(event.getEntries());
+        }
+        generation++;
+        pagesLoading.clear();
+        for (PasswordManager.EntryMetadata entry : event.getEntries()) {
+            if (event.getType() == PasswordManager.ChangeEvent.Type.INSERTED) {
+                insertRow(entry);
+            } else {
+                deleteRow(entry);
+            }
+        }
+    }
+
+    private void insertRow(PasswordManager.EntryMetadata entry) {
+        int row = firstCachedRowAfter(entry);
+        // The exact position is only known when the row above is cached too; otherwise the entry
+        // lands somewhere in the uncached gap above row, which is fetched again when shown anyway
+        boolean exact = row == 0 || cachedEntry(row - 1) != null;
+        rowCount++;
+        rebucket(row, 1, -1, exact ? entry : null);
+        if (results == null) {
+            fireTableRowsInserted(row, row);
+        }
+    }
+
+    private void deleteRow(PasswordManager.EntryMetadata entry) {
+        if (rowCount == 0) {
+            return;
+        }
+        int row = cachedRowOf(entry.getId());
+        if (row >= 0) {
+            rowCount--;
+            rebucket(row + 1, -1, row, null);
+        } else {
+            int after = firstCachedRowAfter(entry);
+            row = Math.max(0, after - 1);
+            rowCount--;
+            rebucket(after, -1, -1, null);
+        }
+        if (results == null) {
+            fireTableRowsDeleted(row, row);
+        }
+    }
+
+    // Index of the first cached row that sorts after entry, or rowCount if there is none
+    private int firstCachedRowAfter(PasswordManager.EntryMetadata entry) {
+        int first = rowCount;
+        for (Map.Entry<Integer, PasswordManager.EntryMetadata[]> page : pages.entrySet()) {
+            PasswordManager.EntryMetadata[] rows = page.getValue();
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] != null && PasswordManager.LISTING_ORDER.compare(rows[i], entry) > 0) {
+                    first = Math.min(first, page.getKey() * pageSize + i);
+                    break;
+                }
+            }
+        }
+        return first;
+    }
+
+    private int cachedRowOf(long id) {
+        for (Map.Entry<Integer, PasswordManager.EntryMetadata[]> page : pages.entrySet()) {
+            PasswordManager.EntryMetadata[] rows = page.getValue();
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] != null && rows[i].getId() == id) {
+                    return page.getKey() * pageSize + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Reads without touching the LRU order or requesting anything
+    private PasswordManager.EntryMetadata cachedEntry(int row) {
+        for (Map.Entry<Integer, PasswordManager.EntryMetadata[]> page : pages.entrySet()) {
+            if (page.getKey() == row / pageSize) {
+                return page.getValue()[row % pageSize];
+            }
+        }
+        return null;
+    }
+
+    // Moves every cached row at or after from by shift, drops removedRow and places inserted at
+    // from, then keeps only the pages that are still complete. Pages stay in their LRU order.
+    private void rebucket(int from, int shift, int removedRow, PasswordManager.EntryMetadata inserted) {
+        Map<Integer, PasswordManager.EntryMetadata[]> rebuilt = new LinkedHashMap<>();
+        for (Map.Entry<Integer, PasswordManager.EntryMetadata[]> page : pages.entrySet()) {
+            PasswordManager.EntryMetadata[] rows = page.getValue();
+            for (int i = 0; i < rows.length; i++) {
+                int row = page.getKey() * pageSize + i;
+                if (rows[i] == null || row == removedRow) {
+                    continue;
+                }
+                place(rebuilt, row >= from ? row + shift : row, rows[i]);
+            }
+        }
+        if (inserted != null) {
+            place(rebuilt, from, inserted);
+        }
+        pages.clear();
+        for (Map.Entry<Integer, PasswordManager.EntryMetadata[]> page : rebuilt.entrySet()) {
+            if (isComplete(page.getKey(), page.getValue())) {
+                pages.put(page.getKey(), page.getValue());
+            }
+        }
+    }
+
+    private void place(Map<Integer, PasswordManager.EntryMetadata[]> pages, int row, PasswordManager.EntryMetadata entry) {
+        if (row < 0 || row >= rowCount) {
+            return;
+        }
+        pages.computeIfAbsent(row / pageSize, index -> new PasswordManager.EntryMetadata[pageSize])[row % pageSize] = entry;
+    }
+
+    private boolean isComplete(int pageIndex, PasswordManager.EntryMetadata[] rows) {
+        int last = Math.min(pageSize, rowCount - pageIndex * pageSize);
+        for (int i = 0; i < last; i++) {
+            if (rows[i] == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Replaces the vault rows with entries, in the given order, until clearResults is called
+    public void showResults(List<PasswordManager.EntryMetadata> entries) {
+        results = new ArrayList<>(entries);
+        fireTableDataChanged();
+    }
+
+    public void clearResults() {
+        if (results != null) {
+            results = null;
+            fireTableDataChanged();
+        }
+    }
+
+    public boolean isShowingResults() {
+        return results != null;
+    }
+
+    private void removeResults(List<PasswordManager.EntryMetadata> deleted) {
+        Set<Long> ids = new HashSet<>();
+        for (PasswordManager.EntryMetadata entry : deleted) {
+            ids.add(entry.getId());
+        }
+        for (int row = results.size() - 1; row >= 0; row--) {
+            if (ids.contains(results.get(row).getId())) {
+                results.remove(row);
+                fireTableRowsDeleted(row, row);
+            }
+        }
+    }
+
+    // The entry shown at row, or null while its page is still loading
+    public PasswordManager.EntryMetadata getEntryAt(int row) {
+        if (results != null) {
+            return results.get(row);
+        }
+        PasswordManager.EntryMetadata[] page = pages.get(row / pageSize);
+        if (page == null) {
+            requestPage(row / pageSize);
+            return null;
+        }
+        return page[row % pageSize];
+    }
+
+    @Override
+    public int getRowCount() {
+        return results != null ? results.size() : rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        PasswordManager.EntryMetadata entry = getEntryAt(row);
+        if (entry == null) {
+            return column == 0 ? LOADING : "";
+        }
+        switch (column) {
+            case 0: return entry.getAppName();
+            case 1: return entry.getLink();
+            case 2: return entry.getUsername();
+            case 3: return MASK;
+            case 4: return entry.getLength();
+            case 5: return entry.getDateTime();
+            default: return null;
+        }
+    }
+
+    private void requestPage(int pageIndex) {
+        if (!pagesLoading.add(pageIndex)) {
+            return;
+        }
+        int requested = generation;
+        passwordManager.readMetadataAt(pageIndex * pageSize, pageSize)
+            .whenComplete((entries, error) -> SwingUtilities.invokeLater(() -> {
+                if (requested != generation) {
+                    return;
+                }
+                pagesLoading.remove(pageIndex);
+                if (error != null) {
+                    // Left uncached; the next repaint of these rows asks again
+                    System.err.println("Error loading passwords: " + AsyncPasswordManager.rootCause(error).getMessage());
+                    return;
+                }
+                storePage(pageIndex, entries);
+            }));
+    }
+
+    private void storePage(int pageIndex, List<PasswordManager.EntryMetadata> entries) {
+        int first = pageIndex * pageSize;
+        if (first >= rowCount) {
+            return;
+        }
+        PasswordManager.EntryMetadata[] page = entries.toArray(new PasswordManager.EntryMetadata[pageSize]);
+        pages.put(pageIndex, page);
+        if (results == null) {
+            fireTableRowsUpdated(first, Math.min(first + pageSize, rowCount) - 1);
+        }
+    }
+}
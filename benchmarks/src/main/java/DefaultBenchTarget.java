@@ -0,0 +1,111 @@
+import benchmarks.BenchTarget;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.stream.IntStream;
+
+public class DefaultBenchTarget implements BenchTarget {
+    private static final long BASE_CREATED_AT = 1_704_067_200_000L;
+
+    // Generation does not touch the vault, but the manager always opens one
+    private PasswordManager generator;
+    private VaultStore store;
+
+    private PasswordManager generator() {
+        if (generator == null) {
+            generator = new PasswordManager("jdbc:sqlite::memory:");
+        }
+        return generator;
+    }
+
+    @Override
+    public String generatePassword(int upperCase, int lowerCase, int numbers, int symbols) {
+        return generator().generatePassword("benchmark", upperCase, lowerCase, numbers, symbols);
+    }
+
+    @Override
+    public int passwordStrength(String password) {
+        return PasswordStrength.score(password);
+    }
+
+    @Override
+    public int[] passwordStrengths(List<String> passwords) {
+        return PasswordStrength.scoreAll(passwords);
+    }
+
+    @Override
+    public void openVault(String location, int rows) throws Exception {
+        closeStore();
+        store = VaultStore.open(location);
+        if (store instanceof SqliteVaultStore) {
+            // The lookup cache would answer the repeated find terms without touching SQLite
+            ((SqliteVaultStore) store).getPasswordManager().setLookupCacheSize(0);
+        }
+        if (store.count() != rows) {
+            populate(rows);
+        }
+    }
+
+    // Refills the vault with synthetic rows through the batched insert path, one second apart
+    private void populate(int rows) throws Exception {
+        store.clear();
+        PasswordManager.PasswordSpec spec = new PasswordManager.PasswordSpec(4, 4, 4, 4);
+        store.appendAll(() -> IntStream.range(0, rows).mapToObj(i -> {
+            String password = generator().generatePassword(spec);
+            return new PasswordManager.PasswordEntry(
+                "site-" + i,
+                "https://site-" + i + ".example.com",
+                "user" + i + "@example.com",
+                password,
+                password.length(),
+                BASE_CREATED_AT + i * 1_000L);
+        }).iterator());
+    }
+
+    @Override
+    public void appendToFile(String website, String link, String username, String password) throws Exception {
+        store.append(website, link, username, password);
+    }
+
+    @Override
+    public int readFile() throws Exception {
+        return store.readAll().size();
+    }
+
+    @Override
+    public boolean findPassword(String searchTerm) throws Exception {
+        return store.find(searchTerm) != null;
+    }
+
+    @Override
+    public boolean removePasswordByIdentifier(String identifier) throws Exception {
+        return store.removeByIdentifier(identifier);
+    }
+
+    @Override
+    public void deleteWebsitesStartingWith(String prefix) throws Exception {
+        // Matching by identifier is a substring match, so the prefix must be unique to benchmark rows
+        store.removeByIdentifier(prefix);
+    }
+
+    @Override
+    public void close() {
+        closeStore();
+        if (generator != null) {
+            generator.closeConnection();
+            generator = null;
+        }
+    }
+
+    private void closeStore() {
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            store = null;
+        }
+    }
+}
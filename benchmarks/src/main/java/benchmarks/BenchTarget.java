@@ -0,0 +1,40 @@
+package benchmarks;
+
+import java.util.List;
+
+// The application classes live in the default package, which named packages cannot import.
+// DefaultBenchTarget (default package) implements this interface and is loaded reflectively
+// once per trial, so the measured calls are plain interface calls.
+public interface BenchTarget {
+
+    String generatePassword(int upperCase, int lowerCase, int numbers, int symbols);
+
+    int passwordStrength(String password);
+
+    int[] passwordStrengths(List<String> passwords);
+
+    // Opens the VaultStore at location (see VaultStore.open), first filling it with exactly rows
+    // synthetic entries named site-0 .. site-(rows-1) unless it already holds that many.
+    void openVault(String location, int rows) throws Exception;
+
+    void appendToFile(String website, String link, String username, String password) throws Exception;
+
+    int readFile() throws Exception;
+
+    boolean findPassword(String searchTerm) throws Exception;
+
+    boolean removePasswordByIdentifier(String identifier) throws Exception;
+
+    // Deletes rows whose website starts with prefix, used to undo writes between iterations
+    void deleteWebsitesStartingWith(String prefix) throws Exception;
+
+    void close();
+
+    static BenchTarget create() {
+        try {
+            return (BenchTarget) Class.forName("DefaultBenchTarget").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("DefaultBenchTarget is missing from the classpath", e);
+        }
+    }
+}
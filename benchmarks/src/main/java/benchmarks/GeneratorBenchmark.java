@@ -0,0 +1,63 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GeneratorBenchmark {
+
+    @Param({"8", "16", "32", "64"})
+    public int length;
+
+    // ALL splits the length evenly over the four classes, the others use a single class
+    @Param({"ALL", "LETTERS", "DIGITS", "SYMBOLS"})
+    public String mix;
+
+    private BenchTarget target;
+    private int upperCase;
+    private int lowerCase;
+    private int numbers;
+    private int symbols;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        target = BenchTarget.create();
+        switch (mix) {
+            case "ALL":
+                upperCase = length / 4;
+                lowerCase = length / 4;
+                numbers = length / 4;
+                symbols = length - 3 * (length / 4);
+                break;
+            case "LETTERS":
+                upperCase = length / 2;
+                lowerCase = length - length / 2;
+                break;
+            case "DIGITS":
+                numbers = length;
+                break;
+            case "SYMBOLS":
+                symbols = length;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mix: " + mix);
+        }
+        target.generatePassword(1, 0, 0, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        target.close();
+    }
+
+    @Benchmark
+    public String generatePassword() {
+        return target.generatePassword(upperCase, lowerCase, numbers, symbols);
+    }
+}
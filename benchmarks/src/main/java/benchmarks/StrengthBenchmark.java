@@ -0,0 +1,55 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StrengthBenchmark {
+    private static final int SAMPLES = 1024;
+
+    @Param({"8", "16", "64"})
+    public int length;
+
+    private BenchTarget target;
+    private String[] passwords;
+    private List<String> passwordList;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        target = BenchTarget.create();
+        passwords = new String[SAMPLES];
+        int quarter = length / 4;
+        for (int i = 0; i < SAMPLES; i++) {
+            passwords[i] = target.generatePassword(quarter, quarter, quarter, length - 3 * quarter);
+        }
+        passwordList = Arrays.asList(passwords);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        target.close();
+    }
+
+    @Benchmark
+    public int calculatePasswordStrength() {
+        String password = passwords[next];
+        next = (next + 1) & (SAMPLES - 1);
+        return target.passwordStrength(password);
+    }
+
+    // All samples in one batch call, reported per password
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int[] scoreAll() {
+        return target.passwordStrengths(passwordList);
+    }
+}
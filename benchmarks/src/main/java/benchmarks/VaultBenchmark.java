@@ -0,0 +1,104 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Storage paths of each VaultStore backend against vaults of different sizes. Each file-backed
+// backend and size gets its own file under target/, built once and reused by later runs; the
+// in-memory backend is filled afresh for every trial.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class VaultBenchmark {
+    private static final String APPEND_PREFIX = "bench-append-";
+    private static final String REMOVE_PREFIX = "bench-remove-";
+
+    @State(Scope.Benchmark)
+    public static class Vault {
+        @Param({"sqlite", "memory", "log"})
+        public String backend;
+
+        @Param({"1000", "100000", "1000000"})
+        public int vaultSize;
+
+        BenchTarget target;
+
+        @Setup(Level.Trial)
+        public void open() throws Exception {
+            new File("target").mkdirs();
+            target = BenchTarget.create();
+            target.openVault(location(), vaultSize);
+        }
+
+        private String location() {
+            switch (backend) {
+                case "sqlite":
+                    return "jdbc:sqlite:target/bench-vault-" + vaultSize + ".db";
+                case "memory":
+                    return "memory:";
+                case "log":
+                    return "log:target/bench-vault-" + vaultSize + ".log";
+                default:
+                    throw new IllegalArgumentException("Unknown backend: " + backend);
+            }
+        }
+
+        // Undo appendToFile so that every iteration sees the same vault size
+        @TearDown(Level.Iteration)
+        public void restore() throws Exception {
+            target.deleteWebsitesStartingWith(APPEND_PREFIX);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            target.close();
+        }
+
+        String randomWebsite() {
+            return "site-" + ThreadLocalRandom.current().nextInt(vaultSize);
+        }
+    }
+
+    // Inserts a fresh row before every removal, outside the measured region
+    @State(Scope.Thread)
+    public static class RemovalCandidate {
+        private long sequence;
+        String identifier;
+
+        @Setup(Level.Invocation)
+        public void insert(Vault vault) throws Exception {
+            identifier = REMOVE_PREFIX + (sequence++) + "-" + System.nanoTime();
+            vault.target.appendToFile(identifier, "", "bench", "Bench#Password1");
+        }
+    }
+
+    @Benchmark
+    public void appendToFile(Vault vault) throws Exception {
+        vault.target.appendToFile(APPEND_PREFIX + System.nanoTime(), "https://example.com", "bench", "Bench#Password1");
+    }
+
+    @Benchmark
+    public int readFile(Vault vault) throws Exception {
+        return vault.target.readFile();
+    }
+
+    @Benchmark
+    public boolean findPasswordHit(Vault vault) throws Exception {
+        return vault.target.findPassword(vault.randomWebsite());
+    }
+
+    @Benchmark
+    public boolean findPasswordMiss(Vault vault) throws Exception {
+        return vault.target.findPassword("no-such-site");
+    }
+
+    @Benchmark
+    public boolean removePasswordByIdentifier(Vault vault, RemovalCandidate candidate) throws Exception {
+        return vault.target.removePasswordByIdentifier(candidate.identifier);
+    }
+}